@@ -0,0 +1,25 @@
+package com.modtranslator;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always attached, so every result includes the
+ * allocation rate next to ops/s. Accepts the usual JMH command line options, except
+ * {@code -prof gc}, which is already added.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+            .parent(commandLine)
+            // alloc.rate учитывает только поток бенчмарка, а перевод идет в пулах;
+            // churn считает освобожденную сборщиком память всего процесса
+            .addProfiler(GCProfiler.class, "churn=true")
+            .build()).run();
+    }
+}
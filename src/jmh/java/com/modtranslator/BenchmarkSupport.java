@@ -0,0 +1,24 @@
+package com.modtranslator;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    // Переводчик без сети и без кэша: измеряется только собственная работа над JAR и файлами.
+    // Журнал, фильтр непереводимых строк и шаблоны отключены: каждая строка идет обычным путем перевода
+    static ModTranslator stubTranslator() {
+        // Вывод журнала в консоль исказил бы замеры; сами вызовы логгера остаются
+        Logger.getLogger("com.modtranslator").setLevel(Level.WARNING);
+        ModTranslator translator = new ModTranslator();
+        translator.setBackend(new LocalTranslationBackend(null, 0));
+        translator.setTranslationMemoryDirectory(null);
+        translator.setRequestsPerSecond(0);
+        translator.setCheckpointEnabled(false);
+        translator.setSkipUntranslatable(false);
+        translator.setTemplateReuseEnabled(false);
+        return translator;
+    }
+}
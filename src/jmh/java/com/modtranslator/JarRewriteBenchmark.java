@@ -0,0 +1,57 @@
+package com.modtranslator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full rewrite of a mod JAR: copying untouched entries and adding the translated language
+ * file. The language file is small, so the number of other entries dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarRewriteBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int entries;
+
+    private File directory;
+    private File jar;
+    private File outputDirectory;
+    private ModTranslator translator;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jar-rewrite-benchmark").toFile();
+        jar = SyntheticMods.createJar(directory, "mod.jar", entries, 200, true, false);
+        outputDirectory = new File(directory, "out");
+        translator = BenchmarkSupport.stubTranslator();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticMods.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void rewriteJar() throws IOException {
+        translator.translate(jar.getPath(), outputDirectory.getPath(), "Russian");
+    }
+}
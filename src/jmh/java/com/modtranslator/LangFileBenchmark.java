@@ -0,0 +1,63 @@
+package com.modtranslator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing, color-code handling, batching and writing of a single language file. The JAR
+ * around it holds nothing else, so the cost is dominated by the number of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LangFileBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    public int keys;
+
+    @Param({"json", "lang"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean colorCodes;
+
+    private File directory;
+    private File jar;
+    private File outputDirectory;
+    private ModTranslator translator;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lang-file-benchmark").toFile();
+        jar = SyntheticMods.createJar(directory, "mod.jar", 0, keys, "json".equals(format), colorCodes);
+        outputDirectory = new File(directory, "out");
+        translator = BenchmarkSupport.stubTranslator();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticMods.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void translateLangFile() throws IOException {
+        translator.translate(jar.getPath(), outputDirectory.getPath(), "Russian");
+    }
+}
@@ -0,0 +1,102 @@
+package com.modtranslator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates mod JARs for the benchmarks: a number of class-like entries plus one
+ * {@code en_us} language file. The content is deterministic so that runs are comparable.
+ */
+final class SyntheticMods {
+    // Без чисел и материалов: значения не должны сводиться к общим шаблонам
+    private static final String[] WORDS = {
+        "polished", "block", "of", "the", "ancient", "sword", "crafting", "table", "enchanted", "glowing",
+        "bright", "power", "energy", "cable", "machine", "right-click", "to", "open", "storage", "fluid"
+    };
+    // Слов в суффиксе с номером строки: WORDS.length^4 = 160000 разных значений
+    private static final int INDEX_WORDS = 4;
+    private static final String[] COLOR_CODES = {"§a", "§c", "§e", "§l", "§o", "§r"};
+
+    private SyntheticMods() {
+    }
+
+    static File createJar(File directory, String name, int classEntries, int langKeys, boolean json, boolean colorCodes)
+            throws IOException {
+        File jar = new File(directory, name);
+        Random random = new Random(42);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            out.write("Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < classEntries; i++) {
+                out.putNextEntry(new ZipEntry("com/example/mod/generated/Class" + i + ".class"));
+                out.write(classBytes(random));
+            }
+            out.putNextEntry(new ZipEntry("assets/example/lang/" + (json ? "en_us.json" : "en_us.lang")));
+            out.write(langFile(langKeys, json, colorCodes));
+        }
+        return jar;
+    }
+
+    static byte[] langFile(int keys, boolean json, boolean colorCodes) {
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder(keys * 48);
+        content.append(json ? "{\n" : "# Synthetic language file\n");
+        for (int i = 0; i < keys; i++) {
+            String key = "item.example.generated_" + i + ".name";
+            String value = value(random, i, colorCodes);
+            if (json) {
+                content.append("  \"").append(key).append("\": \"").append(value).append('"')
+                    .append(i + 1 < keys ? ",\n" : "\n");
+            } else {
+                content.append(key).append('=').append(value).append('\n');
+            }
+        }
+        if (json) {
+            content.append("}\n");
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Каждая строка уникальна, чтобы дедупликация не скрывала работу: номер записан словами
+    // в конце значения (число стало бы слотом шаблона)
+    private static String value(Random random, int index, boolean colorCodes) {
+        StringBuilder value = new StringBuilder();
+        int words = 2 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (colorCodes && random.nextInt(3) == 0) {
+                value.append(COLOR_CODES[random.nextInt(COLOR_CODES.length)]);
+            }
+            value.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        for (int i = 0, rest = index; i < INDEX_WORDS; i++, rest /= WORDS.length) {
+            value.append(i > 0 ? " " : "").append(WORDS[rest % WORDS.length]);
+        }
+        return value.toString();
+    }
+
+    // Похоже на байткод: частично повторяющиеся данные, которые сжимаются, но не идеально
+    private static byte[] classBytes(Random random) {
+        byte[] bytes = new byte[512 + random.nextInt(4096)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + random.nextInt(8));
+        }
+        return bytes;
+    }
+
+    static void deleteRecursively(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        try (Stream<java.nio.file.Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+}
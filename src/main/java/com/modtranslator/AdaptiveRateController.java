@@ -0,0 +1,82 @@
+package com.modtranslator;
+
+/**
+ * Adjusts the request rate of a {@link RateLimiter} with AIMD: every successful request adds
+ * {@code 1 / rate} requests per second (about +1 per second at full speed), while a throttling
+ * response cuts the rate by 30% and a growing latency or a server error reduces it by 10%.
+ * Until the first decrease the rate grows by one per success instead (slow start), so the
+ * service limit is found within a few seconds.
+ * Decreases happen at most once per second so that a burst of errors from requests that
+ * were already in flight counts as one signal. {@code Retry-After} pauses all requests.
+ */
+public class AdaptiveRateController {
+    private static final double THROTTLE_DECREASE = 0.7;
+    private static final double SOFT_DECREASE = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.1;
+    private static final long DECREASE_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final RateLimiter rateLimiter;
+    private final double minRate;
+    private final double maxRate;
+    private double rate;
+    private double smoothedLatency;
+    private double baselineLatency;
+    private long lastDecreaseNanos;
+    private boolean slowStart = true;
+
+    // При minRate == maxRate частота не меняется, соблюдаются только паузы Retry-After
+    public AdaptiveRateController(RateLimiter rateLimiter, double minRate, double maxRate) {
+        this.rateLimiter = rateLimiter;
+        this.rate = rateLimiter.getPermitsPerSecond();
+        this.minRate = Math.min(minRate, rate);
+        this.maxRate = Math.max(maxRate, rate);
+        this.lastDecreaseNanos = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized void onSuccess(long latencyNanos) {
+        smoothedLatency = smoothedLatency == 0
+            ? latencyNanos
+            : smoothedLatency + (latencyNanos - smoothedLatency) * LATENCY_SMOOTHING;
+        baselineLatency = baselineLatency == 0 ? smoothedLatency : Math.min(baselineLatency, smoothedLatency);
+        if (smoothedLatency > baselineLatency * LATENCY_TOLERANCE) {
+            decrease(SOFT_DECREASE);
+        } else if (isAdaptive()) {
+            setRate(Math.min(maxRate, rate + (slowStart ? 1 : 1 / rate)));
+        }
+    }
+
+    public synchronized void onThrottled(long retryAfterMillis) {
+        decrease(THROTTLE_DECREASE);
+        if (retryAfterMillis > 0) {
+            rateLimiter.pause(retryAfterMillis);
+        }
+    }
+
+    public synchronized void onFailure() {
+        decrease(SOFT_DECREASE);
+    }
+
+    private void decrease(double factor) {
+        long now = System.nanoTime();
+        if (!isAdaptive() || now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        slowStart = false;
+        setRate(Math.max(minRate, rate * factor));
+    }
+
+    private boolean isAdaptive() {
+        return rate > 0 && minRate < maxRate;
+    }
+
+    private void setRate(double newRate) {
+        rate = newRate;
+        rateLimiter.setPermitsPerSecond(newRate);
+    }
+}
@@ -0,0 +1,50 @@
+package com.modtranslator;
+
+/**
+ * Bytes that one stage of the language file pipeline may keep on the heap, shared by all
+ * files translated at the same time. A stage that gets no room applies backpressure instead
+ * of growing: the reader waits for its queued lines to be written, the output spills to disk.
+ * Sizes are estimates of the buffered strings and arrays, not exact heap usage.
+ */
+final class BufferBudget {
+    private final long limit;
+    private final TranslationMetrics metrics;
+    private long used;
+
+    BufferBudget(long limit, TranslationMetrics metrics) {
+        this.limit = limit;
+        this.metrics = metrics;
+    }
+
+    // Одна запись больше всего бюджета принимается, когда больше ничего не буферизовано
+    synchronized boolean tryAcquire(long bytes) {
+        if (used > 0 && used + bytes > limit) {
+            return false;
+        }
+        used += bytes;
+        metrics.addBufferedBytes(bytes);
+        return true;
+    }
+
+    // Без ожидания: после остановки запись не должна зависеть от свободного места
+    synchronized void forceAcquire(long bytes) {
+        used += bytes;
+        metrics.addBufferedBytes(bytes);
+    }
+
+    synchronized void release(long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        used -= bytes;
+        metrics.addBufferedBytes(-bytes);
+        notifyAll();
+    }
+
+    // Ждет освобождения места не дольше timeoutMillis
+    synchronized void awaitRelease(long timeoutMillis) throws InterruptedException {
+        if (used > 0) {
+            wait(timeoutMillis);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.modtranslator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Content of a new archive entry, deflated while it is written so that the translated file
+ * never exists uncompressed. Compressed chunks are kept in memory while the output
+ * {@link BufferBudget} has room; after that the entry spills to a temporary file. The CRC and
+ * sizes needed for the ZIP headers are collected on the way, and {@link RawZipWriter} copies
+ * the compressed bytes as they are.
+ */
+final class DeflatedEntry extends OutputStream {
+    private static final int FIRST_CHUNK = 8 * 1024;
+    private static final int CHUNK = 64 * 1024;
+
+    private final BufferBudget budget;
+    private final TranslationMetrics metrics;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final List<byte[]> chunks = new ArrayList<>();
+    private byte[] chunk;
+    private int chunkLength;
+    private long reserved;
+    private File spillFile;
+    private OutputStream spill;
+    private long size;
+    private long compressedSize;
+    private boolean closed;
+
+    DeflatedEntry(BufferBudget budget, TranslationMetrics metrics) {
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Entry is already closed");
+        }
+        crc.update(b, off, len);
+        size += len;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (spill != null) {
+                spill.close();
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    long crc() {
+        return crc.getValue();
+    }
+
+    long size() {
+        return size;
+    }
+
+    long compressedSize() {
+        return compressedSize;
+    }
+
+    // Сжатые данные в порядке записи: из памяти или из временного файла
+    void transferTo(WritableByteChannel out) throws IOException {
+        if (spillFile != null) {
+            try (FileChannel channel = new FileInputStream(spillFile).getChannel()) {
+                long position = 0;
+                long length = channel.size();
+                while (position < length) {
+                    position += channel.transferTo(position, length - position, out);
+                }
+            }
+            return;
+        }
+        for (byte[] full : chunks) {
+            writeFully(out, ByteBuffer.wrap(full));
+        }
+        if (chunk != null) {
+            writeFully(out, ByteBuffer.wrap(chunk, 0, chunkLength));
+        }
+    }
+
+    // Возвращает память бюджету и удаляет временный файл; вызывается и для незаписанных записей
+    void release() {
+        if (!closed) {
+            closed = true;
+            deflater.end();
+        }
+        budget.release(reserved);
+        reserved = 0;
+        chunks.clear();
+        chunk = null;
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException ignored) {
+                // Файл все равно удаляется
+            }
+            spill = null;
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    private void deflate() throws IOException {
+        if (spill != null) {
+            byte[] buffer = chunk;
+            int length = deflater.deflate(buffer);
+            spill.write(buffer, 0, length);
+            compressedSize += length;
+            metrics.addBytesSpilled(length);
+            return;
+        }
+        if (chunk == null || chunkLength == chunk.length) {
+            int length = chunk == null && chunks.isEmpty() ? FIRST_CHUNK : CHUNK;
+            if (!budget.tryAcquire(length)) {
+                spillToFile();
+                deflate();
+                return;
+            }
+            reserved += length;
+            if (chunk != null) {
+                chunks.add(chunk);
+            }
+            chunk = new byte[length];
+            chunkLength = 0;
+        }
+        int length = deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+        chunkLength += length;
+        compressedSize += length;
+    }
+
+    // Уже сжатые данные переносятся в файл, память сразу возвращается бюджету
+    private void spillToFile() throws IOException {
+        spillFile = File.createTempFile("mod-translator", ".deflated");
+        spillFile.deleteOnExit();
+        spill = new BufferedOutputStream(new FileOutputStream(spillFile), CHUNK);
+        long spilled = 0;
+        for (byte[] full : chunks) {
+            spill.write(full);
+            spilled += full.length;
+        }
+        if (chunk != null) {
+            spill.write(chunk, 0, chunkLength);
+            spilled += chunkLength;
+        }
+        metrics.addBytesSpilled(spilled);
+        chunks.clear();
+        budget.release(reserved);
+        reserved = 0;
+        // Буфер для deflate в режиме записи в файл не учитывается: он один на запись
+        chunk = new byte[FIRST_CHUNK];
+        chunkLength = 0;
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.modtranslator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Terms of one target language that must keep a fixed translation or stay untranslated, such
+ * as {@code Redstone Flux} or mod names. Terms are compiled into an Aho–Corasick automaton, so
+ * a value is scanned once whatever the size of the glossary. Matching ignores case and only
+ * whole words count; overlapping matches are resolved leftmost-longest.
+ *
+ * <p>Glossary files are UTF-8 lines {@code term<TAB>translation}, or just {@code term} to keep
+ * it as written in the source; lines starting with {@code #} are comments.
+ */
+final class Glossary {
+    private static final char[] NO_LABELS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    // Узлы бора: отсортированные символы переходов и номера дочерних узлов
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    // Номер термина, заканчивающегося в узле, или -1
+    private final int[] termAt;
+    // Ближайший по суффиксным ссылкам узел, в котором заканчивается термин, или -1
+    private final int[] outputLink;
+    private final int[] termLength;
+    // null - термин остается как в исходном тексте
+    private final String[] translations;
+
+    private Glossary(Map<String, String> entries) {
+        List<char[]> nodeLabels = new ArrayList<>();
+        List<int[]> nodeTargets = new ArrayList<>();
+        List<Integer> nodeTerms = new ArrayList<>();
+        nodeLabels.add(NO_LABELS);
+        nodeTargets.add(NO_TARGETS);
+        nodeTerms.add(-1);
+        termLength = new int[entries.size()];
+        translations = new String[entries.size()];
+        int term = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char ch = key.charAt(i);
+                int next = child(nodeLabels.get(node), nodeTargets.get(node), ch);
+                if (next < 0) {
+                    next = nodeLabels.size();
+                    nodeLabels.add(NO_LABELS);
+                    nodeTargets.add(NO_TARGETS);
+                    nodeTerms.add(-1);
+                    addChild(nodeLabels, nodeTargets, node, ch, next);
+                }
+                node = next;
+            }
+            nodeTerms.set(node, term);
+            termLength[term] = key.length();
+            translations[term] = entry.getValue();
+            term++;
+        }
+
+        int nodes = nodeLabels.size();
+        labels = nodeLabels.toArray(new char[0][]);
+        targets = nodeTargets.toArray(new int[0][]);
+        termAt = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            termAt[i] = nodeTerms.get(i);
+        }
+        fail = new int[nodes];
+        outputLink = new int[nodes];
+        outputLink[0] = -1;
+        // Суффиксные ссылки обходом в ширину: у родителя они уже посчитаны
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            outputLink[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < labels[node].length; i++) {
+                char ch = labels[node][i];
+                int child = targets[node][i];
+                int state = fail[node];
+                int next = child(labels[state], targets[state], ch);
+                while (next < 0 && state != 0) {
+                    state = fail[state];
+                    next = child(labels[state], targets[state], ch);
+                }
+                fail[child] = next >= 0 ? next : 0;
+                outputLink[child] = termAt[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    static Glossary load(File file) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                String term = (tab >= 0 ? line.substring(0, tab) : line).trim();
+                String translation = tab >= 0 ? line.substring(tab + 1).trim() : "";
+                if (!term.isEmpty()) {
+                    entries.put(lowerCase(term), translation.isEmpty() ? null : translation);
+                }
+            }
+        }
+        return new Glossary(entries);
+    }
+
+    int size() {
+        return translations.length;
+    }
+
+    /**
+     * Replaces glossary terms in the text of {@code template} with markers that
+     * {@link PlaceholderTokenizer.Template#restore} turns into the fixed translations.
+     * Returns {@code template} itself when no term occurs.
+     */
+    PlaceholderTokenizer.Template apply(PlaceholderTokenizer.Template template) {
+        String text = template.text;
+        int length = text.length();
+        long[] matches = null;
+        int matchCount = 0;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = Character.toLowerCase(text.charAt(i));
+            int next = child(labels[state], targets[state], ch);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = child(labels[state], targets[state], ch);
+            }
+            state = next >= 0 ? next : 0;
+            for (int node = termAt[state] >= 0 ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+                int end = i + 1;
+                int start = end - termLength[termAt[node]];
+                if (isWordBoundary(text, start) && isWordBoundary(text, end)) {
+                    if (matches == null) {
+                        matches = new long[8];
+                    } else if (matchCount == matches.length) {
+                        matches = Arrays.copyOf(matches, matchCount * 2);
+                    }
+                    // Сортировка по началу, при равном начале - сначала более длинный
+                    matches[matchCount++] = ((long) start << 32) | (Integer.MAX_VALUE - end);
+                }
+            }
+        }
+        if (matchCount == 0) {
+            return template;
+        }
+
+        Arrays.sort(matches, 0, matchCount);
+        int firstMarker = template.markerCount();
+        List<String> terms = new ArrayList<>();
+        StringBuilder masked = new StringBuilder(length);
+        int position = 0;
+        for (int i = 0; i < matchCount && firstMarker + terms.size() < PlaceholderTokenizer.MAX_MARKERS; i++) {
+            int start = (int) (matches[i] >>> 32);
+            int end = Integer.MAX_VALUE - (int) matches[i];
+            if (start < position) {
+                continue;
+            }
+            String translation = translations[termIndex(text, start, end)];
+            masked.append(text, position, start).append('{').append(firstMarker + terms.size()).append('}');
+            terms.add(translation != null ? translation : text.substring(start, end));
+            position = end;
+        }
+        masked.append(text, position, length);
+        return template.withTerms(masked.toString(), terms.toArray(new String[0]));
+    }
+
+    // Номер термина, совпавшего с text[start, end): спуск по бору без суффиксных ссылок
+    private int termIndex(String text, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(labels[node], targets[node], Character.toLowerCase(text.charAt(i)));
+        }
+        return termAt[node];
+    }
+
+    private static boolean isWordBoundary(String text, int index) {
+        return index == 0 || index == text.length()
+            || !Character.isLetterOrDigit(text.charAt(index - 1)) || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static int child(char[] nodeLabels, int[] nodeTargets, char ch) {
+        int index = Arrays.binarySearch(nodeLabels, ch);
+        return index >= 0 ? nodeTargets[index] : -1;
+    }
+
+    private static void addChild(List<char[]> nodeLabels, List<int[]> nodeTargets, int node, char ch, int child) {
+        char[] oldLabels = nodeLabels.get(node);
+        int[] oldTargets = nodeTargets.get(node);
+        int insert = -Arrays.binarySearch(oldLabels, ch) - 1;
+        char[] newLabels = new char[oldLabels.length + 1];
+        int[] newTargets = new int[oldTargets.length + 1];
+        System.arraycopy(oldLabels, 0, newLabels, 0, insert);
+        System.arraycopy(oldTargets, 0, newTargets, 0, insert);
+        newLabels[insert] = ch;
+        newTargets[insert] = child;
+        System.arraycopy(oldLabels, insert, newLabels, insert + 1, oldLabels.length - insert);
+        System.arraycopy(oldTargets, insert, newTargets, insert + 1, oldTargets.length - insert);
+        nodeLabels.set(node, newLabels);
+        nodeTargets.set(node, newTargets);
+    }
+
+    private static String lowerCase(String term) {
+        char[] chars = term.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,208 @@
+package com.modtranslator;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParseException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Google Translate's public {@code translate_a/single} endpoint. Batches are sent as one
+ * newline-joined request and split back on line breaks.
+ *
+ * <p>Requests are non-blocking: {@link #translateAsync} enqueues the call on OkHttp's
+ * dispatcher and completes the future from its callback. All instances share one client, so
+ * connections (HTTP/2 where the server negotiates it, otherwise a pool of keep-alive
+ * HTTP/1.1 connections) and the per-host request limit are shared as well. The limit is set
+ * with {@code -Dmodtranslator.google.maxRequestsPerHost} (64 by default).
+ */
+public class GoogleTranslationBackend implements TranslationBackend {
+    private static final Logger LOGGER = Logger.getLogger(GoogleTranslationBackend.class.getName());
+    private static final String DEFAULT_ENDPOINT = "https://translate.googleapis.com/translate_a/single";
+    private static final OkHttpClient SHARED_CLIENT = createClient(
+        Integer.getInteger("modtranslator.google.maxRequestsPerHost", 64));
+
+    private final String endpoint;
+    private final OkHttpClient client = SHARED_CLIENT;
+    private final Gson gson = new Gson();
+    // Запросы этого экземпляра, которые еще не завершились; отменяются в cancelAll
+    private final Set<Call> activeCalls = ConcurrentHashMap.newKeySet();
+
+    public GoogleTranslationBackend() {
+        this(System.getProperty("modtranslator.endpoint", DEFAULT_ENDPOINT));
+    }
+
+    public GoogleTranslationBackend(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    private static OkHttpClient createClient(int maxRequestsPerHost) {
+        // Потоки диспетчера - демоны, чтобы простаивающий клиент не задерживал выход из JVM
+        AtomicInteger threadCounter = new AtomicInteger();
+        Dispatcher dispatcher = new Dispatcher(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "google-translate-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+        int perHost = Math.max(1, maxRequestsPerHost);
+        dispatcher.setMaxRequestsPerHost(perHost);
+        dispatcher.setMaxRequests(Math.max(perHost, 256));
+        return new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(Math.max(16, perHost), 5, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .build();
+    }
+
+    @Override
+    public String getName() {
+        return "google";
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public String translate(String text, String targetLangCode) throws IOException {
+        Call call = client.newCall(newRequest(text, targetLangCode));
+        activeCalls.add(call);
+        try (Response response = call.execute()) {
+            return parseResponse(response);
+        } finally {
+            activeCalls.remove(call);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> translateAsync(String text, String targetLangCode) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Request request;
+        try {
+            request = newRequest(text, targetLangCode);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        Call call = client.newCall(request);
+        activeCalls.add(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                activeCalls.remove(call);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                activeCalls.remove(call);
+                try (Response body = response) {
+                    future.complete(parseResponse(body));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private Request newRequest(String text, String targetLangCode) throws IOException {
+        String encodedText = URLEncoder.encode(text, "UTF-8");
+        String url = String.format(
+            "%s?client=gtx&sl=en&tl=%s&dt=t&q=%s",
+            endpoint,
+            targetLangCode,
+            encodedText
+        );
+
+        LOGGER.fine(() -> "Translating text: " + text);
+        return new Request.Builder()
+            .url(url)
+            .header("User-Agent", "Mozilla/5.0")
+            .build();
+    }
+
+    private String parseResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new TranslationBackendException("Translation request failed: " + response.code(), response.code(),
+                TranslationBackendException.parseRetryAfter(response.header("Retry-After")));
+        }
+
+        String responseBody = response.body().string();
+        try {
+            JsonArray jsonArray = gson.fromJson(responseBody, JsonArray.class);
+            if (jsonArray != null && jsonArray.size() > 0) {
+                JsonArray translationArray = jsonArray.get(0).getAsJsonArray();
+                if (translationArray != null && translationArray.size() > 0) {
+                    StringBuilder translatedText = new StringBuilder();
+                    for (int i = 0; i < translationArray.size(); i++) {
+                        JsonArray translationPart = translationArray.get(i).getAsJsonArray();
+                        if (translationPart != null && translationPart.size() > 0) {
+                            translatedText.append(translationPart.get(0).getAsString());
+                        }
+                    }
+                    String result = translatedText.toString();
+                    LOGGER.fine(() -> "Translation successful: " + result);
+                    return result;
+                }
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Failed to parse translation response", e);
+        }
+        throw new IOException("Failed to parse translation response");
+    }
+
+    // Строки разделяются переводом строки; если ответ разбился на другое количество строк, возвращаем null
+    @Override
+    public List<String> translateBatch(List<String> texts, String targetLangCode) throws IOException {
+        return splitBatch(translate(String.join("\n", texts), targetLangCode), texts.size());
+    }
+
+    @Override
+    public CompletableFuture<List<String>> translateBatchAsync(List<String> texts, String targetLangCode) {
+        return translateAsync(String.join("\n", texts), targetLangCode)
+            .thenApply(translatedText -> splitBatch(translatedText, texts.size()));
+    }
+
+    private static List<String> splitBatch(String translatedText, int expected) {
+        String[] parts = translatedText.split("\r?\n", -1);
+        if (parts.length != expected) {
+            LOGGER.fine(() -> "Batch response has " + parts.length + " lines instead of " + expected);
+            return null;
+        }
+        return Arrays.asList(parts);
+    }
+
+    // Отмененные запросы сразу завершаются с IOException
+    @Override
+    public void cancelAll() {
+        for (Call call : activeCalls) {
+            call.cancel();
+        }
+    }
+
+    // Клиент общий для всех экземпляров, поэтому закрываются только свои запросы
+    @Override
+    public void close() {
+        cancelAll();
+    }
+}
@@ -0,0 +1,124 @@
+package com.modtranslator;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Opens a language file as a character stream and detects its format from the first
+ * significant character, without reading the rest of the file: JSON files start with
+ * {@code '{'}, everything else is treated as a {@code key=value} .lang file.
+ * {@link #countEntries} does a quick pass over a file to know the progress total in advance,
+ * {@link #readValues} lists its translatable values without writing anything.
+ */
+final class LangFileInput {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    final boolean json;
+    final Reader reader;
+
+    private LangFileInput(boolean json, Reader reader) {
+        this.json = json;
+        this.reader = reader;
+    }
+
+    static LangFileInput open(InputStream is) throws IOException {
+        Reader source = new InputStreamReader(is, StandardCharsets.UTF_8);
+        StringBuilder prefix = new StringBuilder();
+        int ch;
+        while ((ch = source.read()) != -1 && (ch <= ' ' || ch == BYTE_ORDER_MARK)) {
+            prefix.append((char) ch);
+        }
+        if (ch == '{') {
+            // Пробелы и BOM перед JSON не нужны, возвращаем только открывающую скобку
+            PushbackReader reader = new PushbackReader(source, 1);
+            reader.unread(ch);
+            return new LangFileInput(true, reader);
+        }
+        if (ch != -1) {
+            prefix.append((char) ch);
+        }
+        // Для .lang прочитанное начало возвращается в поток целиком
+        PushbackReader reader = new PushbackReader(source, Math.max(1, prefix.length()));
+        reader.unread(prefix.toString().toCharArray());
+        return new LangFileInput(false, reader);
+    }
+
+    // Количество шагов прогресса при переводе файла на один язык: элементы верхнего уровня JSON
+    // или строки .lang. Если values не null, в том же проходе передаются строковые значения, как в
+    // readValues. Ошибки формата не сообщаются: их обнаружит сам перевод
+    static int countEntries(InputStream is, BiConsumer<String, String> values) throws IOException {
+        LangFileInput input = open(is);
+        int count = 0;
+        if (input.json) {
+            try (JsonReader reader = new JsonReader(input.reader)) {
+                reader.setLenient(true);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (values != null && reader.peek() == JsonToken.STRING) {
+                        values.accept(key, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                    count++;
+                }
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                return count;
+            }
+            return count;
+        }
+        try (BufferedReader reader = new BufferedReader(input.reader)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                count++;
+                int separator = values != null ? line.indexOf('=') : -1;
+                if (separator >= 0 && !line.trim().isEmpty()) {
+                    values.accept(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return count;
+    }
+
+    // Строковые значения файла (ключ, значение) в порядке следования; нестроковые значения JSON,
+    // комментарии и строки .lang без '=' пропускаются
+    static void readValues(InputStream is, BiConsumer<String, String> values) throws IOException {
+        LangFileInput input = open(is);
+        if (input.json) {
+            try (JsonReader reader = new JsonReader(input.reader)) {
+                reader.setLenient(true);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING) {
+                        values.accept(key, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } catch (JsonParseException | IllegalStateException e) {
+                throw new IOException("Invalid JSON format in language file", e);
+            }
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(input.reader)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (separator >= 0 && !line.trim().isEmpty()) {
+                    values.accept(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+    }
+}
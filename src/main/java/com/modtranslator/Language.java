@@ -0,0 +1,101 @@
+package com.modtranslator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A supported target language: the name shown to users, the code sent to the translation
+ * service and the Minecraft locale used in lang file names ({@code he_il.json} for Hebrew,
+ * service code {@code iw}). The registry is read once from {@code languages.tsv} and shared;
+ * a run resolves its target names to these objects up front and passes them through.
+ */
+public final class Language {
+    private static final String RESOURCE = "languages.tsv";
+
+    private final String name;
+    private final String code;
+    private final String minecraftLocale;
+
+    private Language(String name, String code, String minecraftLocale) {
+        this.name = name;
+        this.code = code;
+        this.minecraftLocale = minecraftLocale;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Код языка для сервиса перевода, памяти переводов и файлов глоссария
+    public String getCode() {
+        return code;
+    }
+
+    // Имя языкового файла без расширения: ru_ru, zh_cn, he_il
+    public String getMinecraftLocale() {
+        return minecraftLocale;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // Все языки по названию
+    public static List<Language> all() {
+        return Registry.ALL;
+    }
+
+    // Название без учета регистра; null, если язык не поддерживается
+    public static Language forName(String name) {
+        return Registry.BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static final class Registry {
+        static final List<Language> ALL;
+        static final Map<String, Language> BY_NAME = new HashMap<>();
+
+        static {
+            List<Language> languages = load();
+            languages.sort((a, b) -> a.name.compareTo(b.name));
+            for (Language language : languages) {
+                BY_NAME.put(language.name.toLowerCase(Locale.ROOT), language);
+            }
+            ALL = Collections.unmodifiableList(languages);
+        }
+
+        private static List<Language> load() {
+            List<Language> languages = new ArrayList<>();
+            try (InputStream is = Language.class.getResourceAsStream(RESOURCE)) {
+                if (is == null) {
+                    throw new IOException("Resource not found: " + RESOURCE);
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\t");
+                    if (fields.length != 3) {
+                        throw new IOException("Invalid line in " + RESOURCE + ": " + line);
+                    }
+                    languages.add(new Language(fields[0].trim(), fields[1].trim(), fields[2].trim()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load languages", e);
+            }
+            return languages;
+        }
+    }
+}
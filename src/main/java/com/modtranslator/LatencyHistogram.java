@@ -0,0 +1,94 @@
+package com.modtranslator;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed buckets from 1 ms to 30 s. Percentiles are reported as
+ * the upper bound of the bucket they fall into, which is precise enough to tell a healthy
+ * service (tens of milliseconds) from a throttled one (seconds).
+ */
+public final class LatencyHistogram {
+    private static final long[] BOUNDS_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // повторяем, пока другой поток не записал большее значение
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n > 0 ? totalNanos.sum() / 1_000_000d / n : 0;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000d;
+    }
+
+    // Верхняя граница корзины, в которую попадает перцентиль; для последней корзины - максимум
+    public double percentileMillis(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return bucket < BOUNDS_MILLIS.length
+                    ? Math.min(BOUNDS_MILLIS[bucket], getMaxMillis())
+                    : getMaxMillis();
+            }
+        }
+        return getMaxMillis();
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", getCount());
+        json.addProperty("meanMillis", round(getMeanMillis()));
+        json.addProperty("p50Millis", round(percentileMillis(50)));
+        json.addProperty("p95Millis", round(percentileMillis(95)));
+        json.addProperty("p99Millis", round(percentileMillis(99)));
+        json.addProperty("maxMillis", round(getMaxMillis()));
+        JsonObject buckets = new JsonObject();
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            String label = bucket < BOUNDS_MILLIS.length
+                ? "<" + BOUNDS_MILLIS[bucket] + "ms"
+                : ">=" + BOUNDS_MILLIS[BOUNDS_MILLIS.length - 1] + "ms";
+            buckets.addProperty(label, counts.get(bucket));
+        }
+        json.add("buckets", buckets);
+        return json;
+    }
+
+    static double round(double value) {
+        return Math.round(value * 10) / 10d;
+    }
+}
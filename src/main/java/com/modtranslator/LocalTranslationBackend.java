@@ -0,0 +1,235 @@
+package com.modtranslator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Offline backend for load testing and for machines without network access. Translations
+ * come from a TSV dictionary; strings that are not in it are returned unchanged. An optional
+ * delay per request imitates network latency, and a share of requests can be answered with
+ * 429 to exercise retries and rate control. Asynchronous requests wait out the delay on a
+ * timer, so like a real network client they do not occupy a thread while in flight.
+ *
+ * <p>Dictionary lines are {@code lang<TAB>source<TAB>translation}, or
+ * {@code source<TAB>translation} for every language. {@code \t}, {@code \n} and {@code \\}
+ * are unescaped; lines starting with {@code #} are comments.
+ */
+public class LocalTranslationBackend implements TranslationBackend {
+    private static final Logger LOGGER = Logger.getLogger(LocalTranslationBackend.class.getName());
+    private static final String ANY_LANGUAGE = "*";
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "local-translation-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File dictionaryFile;
+    private final long latencyMillis;
+    private final double throttleRate;
+    private volatile Map<String, String> dictionary;
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    // Настройки из -Dmodtranslator.local.dictionary, -Dmodtranslator.local.latencyMs
+    // и -Dmodtranslator.local.throttleRate (доля запросов, получающих 429)
+    public LocalTranslationBackend() {
+        this(dictionaryFromProperty(), Long.getLong("modtranslator.local.latencyMs", 0),
+            Double.parseDouble(System.getProperty("modtranslator.local.throttleRate", "0")));
+    }
+
+    public LocalTranslationBackend(File dictionaryFile, long latencyMillis) {
+        this(dictionaryFile, latencyMillis, 0);
+    }
+
+    public LocalTranslationBackend(File dictionaryFile, long latencyMillis, double throttleRate) {
+        this.dictionaryFile = dictionaryFile;
+        this.latencyMillis = latencyMillis;
+        this.throttleRate = throttleRate;
+    }
+
+    private static File dictionaryFromProperty() {
+        String path = System.getProperty("modtranslator.local.dictionary");
+        return path != null ? new File(path) : null;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public String translate(String text, String targetLangCode) throws IOException {
+        simulateLatency();
+        return lookup(dictionary(), text, targetLangCode);
+    }
+
+    // Пакет считается одним запросом: задержка на пакет, а не на строку
+    @Override
+    public List<String> translateBatch(List<String> texts, String targetLangCode) throws IOException {
+        simulateLatency();
+        Map<String, String> entries = dictionary();
+        List<String> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(lookup(entries, text, targetLangCode));
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<String> translateAsync(String text, String targetLangCode) {
+        return respondLater(() -> lookup(dictionary(), text, targetLangCode));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> translateBatchAsync(List<String> texts, String targetLangCode) {
+        return respondLater(() -> {
+            Map<String, String> entries = dictionary();
+            List<String> results = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                results.add(lookup(entries, text, targetLangCode));
+            }
+            return results;
+        });
+    }
+
+    private interface Response<T> {
+        T get() throws IOException;
+    }
+
+    private <T> CompletableFuture<T> respondLater(Response<T> response) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable respond = () -> {
+            pending.remove(future);
+            try {
+                simulateThrottling();
+                future.complete(response.get());
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (latencyMillis > 0) {
+            pending.add(future);
+            TIMER.schedule(respond, latencyMillis, TimeUnit.MILLISECONDS);
+        } else {
+            respond.run();
+        }
+        return future;
+    }
+
+    @Override
+    public void cancelAll() {
+        for (CompletableFuture<?> future : pending) {
+            future.completeExceptionally(new InterruptedIOException("Canceled"));
+        }
+        pending.clear();
+    }
+
+    private static String lookup(Map<String, String> entries, String text, String targetLangCode) {
+        String translation = entries.get(targetLangCode + '\0' + text);
+        if (translation == null) {
+            translation = entries.get(ANY_LANGUAGE + '\0' + text);
+        }
+        return translation != null ? translation : text;
+    }
+
+    private void simulateLatency() throws IOException {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for local translation");
+            }
+        }
+        simulateThrottling();
+    }
+
+    private void simulateThrottling() throws TranslationBackendException {
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throw new TranslationBackendException("Simulated throttling", 429, -1);
+        }
+    }
+
+    // Словарь читается при первом запросе, чтобы ServiceLoader мог создать backend без побочных эффектов
+    private Map<String, String> dictionary() throws IOException {
+        Map<String, String> entries = dictionary;
+        if (entries == null) {
+            synchronized (this) {
+                entries = dictionary;
+                if (entries == null) {
+                    entries = dictionaryFile != null ? readDictionary(dictionaryFile) : new HashMap<>();
+                    dictionary = entries;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, String> readDictionary(File file) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 2) {
+                    entries.put(ANY_LANGUAGE + '\0' + unescape(fields[0]), unescape(fields[1]));
+                } else if (fields.length == 3) {
+                    entries.put(fields[0] + '\0' + unescape(fields[1]), unescape(fields[2]));
+                } else {
+                    LOGGER.warning("Skipping malformed dictionary line " + lineNumber + " in " + file);
+                }
+            }
+        }
+        LOGGER.info("Loaded " + entries.size() + " dictionary entries from " + file);
+        return entries;
+    }
+
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder result = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char ch = field.charAt(i);
+            if (ch == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                switch (next) {
+                    case 't': result.append('\t'); break;
+                    case 'n': result.append('\n'); break;
+                    case '\\': result.append('\\'); break;
+                    default: result.append(ch).append(next);
+                }
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+}
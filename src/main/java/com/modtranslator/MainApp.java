@@ -5,7 +5,10 @@ import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.dnd.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class MainApp {
     private JTextField inputFileField;
@@ -18,6 +21,7 @@ public class MainApp {
     private JButton selectFolderButton;
     private JButton translateButton;
     private JCheckBox logsCheckBox;
+    private List<File> selectedInputs = new ArrayList<>();
 
     public MainApp() {
         translator = new ModTranslator();
@@ -117,6 +121,8 @@ public class MainApp {
         // Event Handlers
         selectModButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setMultiSelectionEnabled(true);
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
             fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
                 public boolean accept(File f) {
                     return f.isDirectory() || f.getName().toLowerCase().endsWith(".jar");
@@ -126,7 +132,7 @@ public class MainApp {
                 }
             });
             if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                inputFileField.setText(fileChooser.getSelectedFile().getAbsolutePath());
+                setInputs(Arrays.asList(fileChooser.getSelectedFiles()));
             }
         });
 
@@ -144,14 +150,15 @@ public class MainApp {
                 return;
             }
 
-            String inputFile = inputFileField.getText();
+            List<File> inputs = new ArrayList<>(selectedInputs);
             String outputDir = outputDirField.getText();
             String targetLanguage = (String) languageComboBox.getSelectedItem();
 
-            if (inputFile.isEmpty()) {
+            if (inputs.isEmpty()) {
                 JOptionPane.showMessageDialog(frame, "Please select a mod file to translate!");
                 return;
             }
+            boolean batch = inputs.size() > 1;
 
             translateButton.setText("Stop");
             translateButton.setBackground(new Color(255, 99, 71)); // Красный цвет для кнопки Stop
@@ -176,7 +183,9 @@ public class MainApp {
                         progressLabel.setText("Translation completed!");
                         translateButton.setText("Translate");
                         translateButton.setBackground(null); // Возвращаем обычный цвет кнопки
-                        JOptionPane.showMessageDialog(frame, "Translation completed successfully!");
+                        if (!batch) {
+                            JOptionPane.showMessageDialog(frame, "Translation completed successfully!");
+                        }
                     });
                 }
 
@@ -194,7 +203,11 @@ public class MainApp {
             // Start translation in background
             new Thread(() -> {
                 try {
-                    translator.translate(inputFile, outputDir, targetLanguage);
+                    if (batch) {
+                        translateBatch(frame, inputs, outputDir, targetLanguage);
+                    } else {
+                        translator.translate(inputs.get(0).getAbsolutePath(), outputDir, targetLanguage);
+                    }
                 } catch (Exception ex) {
                     SwingUtilities.invokeLater(() -> {
                         JOptionPane.showMessageDialog(frame, "Translation error: " + ex.getMessage());
@@ -210,6 +223,74 @@ public class MainApp {
         frame.setVisible(true);
     }
 
+    private void translateBatch(JFrame frame, List<File> inputs, String outputDir, String targetLanguage) throws Exception {
+        int[] finishedJars = {0};
+        Map<File, Exception> failures = translator.translateAll(inputs, outputDir, targetLanguage,
+            new ModTranslator.BatchProgressListener() {
+                @Override
+                public void onJarProgress(File jar, int current, int total) {
+                }
+
+                @Override
+                public void onJarFinished(File jar, Exception error) {
+                    synchronized (finishedJars) {
+                        finishedJars[0]++;
+                    }
+                }
+
+                @Override
+                public void onOverallProgress(int current, int total) {
+                    int percentage = (int) ((current / (double) total) * 100);
+                    int jarsDone;
+                    synchronized (finishedJars) {
+                        jarsDone = finishedJars[0];
+                    }
+                    SwingUtilities.invokeLater(() -> {
+                        progressBar.setValue(percentage);
+                        progressLabel.setText(String.format("Translated %d of %d keys (%d of %d mods done)",
+                            current, total, jarsDone, inputs.size()));
+                    });
+                }
+            });
+
+        // После остановки сводка не нужна: onStopped уже показал, что перевод прерван
+        if (translator.isStopRequested()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (failures.isEmpty()) {
+                JOptionPane.showMessageDialog(frame, "Translated " + inputs.size() + " mods successfully!");
+                return;
+            }
+            StringBuilder message = new StringBuilder();
+            message.append(String.format("Translated %d of %d mods. Failed:%n", inputs.size() - failures.size(), inputs.size()));
+            for (Map.Entry<File, Exception> failure : failures.entrySet()) {
+                message.append(failure.getKey().getName()).append(": ").append(failure.getValue().getMessage()).append("\n");
+            }
+            JOptionPane.showMessageDialog(frame, message.toString());
+        });
+    }
+
+    // Принимает файлы и каталоги; из каталогов берутся все .jar
+    private void setInputs(List<File> files) {
+        List<File> jars = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                jars.addAll(ModTranslator.findJars(file));
+            } else if (file.getName().toLowerCase().endsWith(".jar")) {
+                jars.add(file);
+            }
+        }
+        if (jars.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No .jar files found in the selection");
+            return;
+        }
+        selectedInputs = jars;
+        inputFileField.setText(jars.size() == 1
+            ? jars.get(0).getAbsolutePath()
+            : jars.size() + " mods: " + jars.get(0).getParentFile().getAbsolutePath());
+    }
+
     private void setupDragAndDrop(JTextField field) {
         new DropTarget(field, new DropTargetAdapter() {
             public void drop(DropTargetDropEvent event) {
@@ -219,13 +300,7 @@ public class MainApp {
                         event.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
                     
                     if (!droppedFiles.isEmpty()) {
-                        File file = droppedFiles.get(0);
-                        if (file.getName().toLowerCase().endsWith(".jar")) {
-                            field.setText(file.getAbsolutePath());
-                        } else {
-                            JOptionPane.showMessageDialog(null, 
-                                "Please drop a .jar file");
-                        }
+                        setInputs(droppedFiles);
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -234,7 +309,12 @@ public class MainApp {
         });
     }
 
+    // С аргументами (или без графической среды) запускается консольный режим
     public static void main(String[] args) {
+        if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+            TranslatorCli.main(args);
+            return;
+        }
         SwingUtilities.invokeLater(() -> new MainApp());
     }
 }
@@ -1,25 +1,48 @@
 package com.modtranslator;
 
-import okhttp3.*;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.jar.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
-import java.net.URLEncoder;
 import java.util.logging.FileHandler;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 public class ModTranslator {
-    private static final Pattern COLOR_CODE_PATTERN = Pattern.compile("(§[0-9a-fk-or])");
+    private static final double MIN_REQUESTS_PER_SECOND = 0.5;
+    // JAR внутри JAR внутри JAR; глубже вложенные архивы копируются без изменений
+    private static final int MAX_NESTED_JAR_DEPTH = 3;
+    // Шаблонов в кэше запуска; новые шаблоны сверх этого переводятся без кэша
+    private static final int MAX_TEMPLATES = 100_000;
     private static final Logger LOGGER = Logger.getLogger(ModTranslator.class.getName());
     private static FileHandler fileHandler;
     private static boolean loggingEnabled = false;
@@ -45,14 +68,63 @@ public class ModTranslator {
         }
     }
     
-    private Map<String, String> languageCodes;
-    private final OkHttpClient client;
+    private TranslationBackend backend;
     private final Gson gson;
     private TranslationProgressListener progressListener;
     private int totalLines;
     private int currentLine;
     private volatile boolean stopRequested = false;
-    private String currentOutputJarPath;
+    private final Set<File> activeOutputs = ConcurrentHashMap.newKeySet();
+    private int parallelism = 4;
+    private int maxInFlight = 64;
+    private double requestsPerSecond = 20;
+    private double maxRequestsPerSecond = 100;
+    private boolean adaptiveRate = true;
+    private int maxRetries = 4;
+    private long retryBaseDelayMillis = 500;
+    private long retryMaxDelayMillis = 30_000;
+    private int batchCharLimit = 1000;
+    private File translationMemoryDirectory = new File(System.getProperty("user.home"), ".mod_translator/translation_memory");
+    private long translationMemoryMaxBytes = 256L * 1024 * 1024;
+    private TranslationMemory translationMemory;
+    private File previousTranslation;
+    // Отдельный языковой файл из setPreviousTranslation не применяется в сборке из нескольких JAR
+    private volatile boolean previousLangFileEnabled;
+    private boolean checkpointEnabled = true;
+    private boolean skipUntranslatable = true;
+    private final List<Pattern> skipKeyPatterns = new ArrayList<>();
+    private double minLetterRatio = 0.25;
+    private UntranslatableFilter untranslatableFilter;
+    private File glossaryDirectory;
+    private boolean sharedDictionaryEnabled;
+    private boolean nestedJarsEnabled = true;
+    private long nestedJarMemoryBytes = 256L * 1024 * 1024;
+    private int nestedJarMemoryLimitKilobytes;
+    // Память под вложенные JAR, которые сейчас перестраиваются, в килобайтах
+    private Semaphore nestedJarMemory;
+    private ExecutorService nestedJarPool;
+    private boolean templateReuseEnabled = true;
+    private TemplateSlots templateSlots;
+    // Язык + шаблон (или материал) -> перевод; общий для всех файлов запуска
+    private final Map<String, CompletableFuture<String>> templateCache = new ConcurrentHashMap<>();
+    // Общий словарь сборки на время пакетного перевода в режиме modpack
+    private volatile SharedDictionary sharedDictionary;
+    // Код языка -> глоссарий; загружается при первом файле на этом языке в запуске
+    private final Map<String, Optional<Glossary>> glossaries = new ConcurrentHashMap<>();
+    private TranslationStats stats = new TranslationStats();
+    private TranslationMetrics metrics = new TranslationMetrics();
+    private MetricsListener metricsListener;
+    private File metricsReport;
+    private int jarParallelism = 4;
+    private int langFileParallelism = 8;
+    private volatile TranslationExecutor executor;
+    private AdaptiveRateController rateController;
+    private final Queue<String> deadLetters = new ConcurrentLinkedQueue<>();
+    private ExecutorService langFilePool;
+    private long bufferMemoryBytes = 64L * 1024 * 1024;
+    // Строки между разбором и записью и переводы, еще не записанные в архив; по половине bufferMemoryBytes
+    private BufferBudget lineBudget;
+    private BufferBudget outputBudget;
     
     public interface TranslationProgressListener {
         void onProgress(int current, int total);
@@ -60,9 +132,20 @@ public class ModTranslator {
         void onStopped();
     }
     
+    // Прогресс пакетного перевода: по каждому JAR и суммарно по всем строкам
+    public interface BatchProgressListener {
+        void onJarProgress(File jar, int current, int total);
+        void onJarFinished(File jar, Exception error);
+        void onOverallProgress(int current, int total);
+    }
+
+    // Вызывается после каждого JAR и в конце запуска (metrics.isFinished())
+    public interface MetricsListener {
+        void onMetrics(TranslationMetrics metrics);
+    }
+    
     public ModTranslator() {
-        initializeLanguageCodes();
-        client = new OkHttpClient();
+        backend = TranslationBackend.load(System.getProperty("modtranslator.backend", "google"));
         gson = new Gson();
     }
 
@@ -70,127 +153,208 @@ public class ModTranslator {
         this.progressListener = listener;
     }
 
-    private void initializeLanguageCodes() {
-        languageCodes = new TreeMap<>();  // Используем TreeMap для автоматической сортировки
-        
-        // Обновленные названия китайских языков
-        languageCodes.put("Chinese (Simplified)", "zh-CN");
-        languageCodes.put("Chinese (Traditional)", "zh-TW");
-        
-        // Остальные языки
-        languageCodes.put("Afrikaans", "af");
-        languageCodes.put("Albanian", "sq");
-        languageCodes.put("Amharic", "am");
-        languageCodes.put("Arabic", "ar");
-        languageCodes.put("Armenian", "hy");
-        languageCodes.put("Azerbaijani", "az");
-        languageCodes.put("Basque", "eu");
-        languageCodes.put("Belarusian", "be");
-        languageCodes.put("Bengali", "bn");
-        languageCodes.put("Bosnian", "bs");
-        languageCodes.put("Bulgarian", "bg");
-        languageCodes.put("Catalan", "ca");
-        languageCodes.put("Cebuano", "ceb");
-        languageCodes.put("Chichewa", "ny");
-        languageCodes.put("Corsican", "co");
-        languageCodes.put("Croatian", "hr");
-        languageCodes.put("Czech", "cs");
-        languageCodes.put("Danish", "da");
-        languageCodes.put("Dutch", "nl");
-        languageCodes.put("English", "en");
-        languageCodes.put("Esperanto", "eo");
-        languageCodes.put("Estonian", "et");
-        languageCodes.put("Filipino", "tl");
-        languageCodes.put("Finnish", "fi");
-        languageCodes.put("French", "fr");
-        languageCodes.put("Frisian", "fy");
-        languageCodes.put("Galician", "gl");
-        languageCodes.put("Georgian", "ka");
-        languageCodes.put("German", "de");
-        languageCodes.put("Greek", "el");
-        languageCodes.put("Gujarati", "gu");
-        languageCodes.put("Haitian Creole", "ht");
-        languageCodes.put("Hausa", "ha");
-        languageCodes.put("Hawaiian", "haw");
-        languageCodes.put("Hebrew", "iw");
-        languageCodes.put("Hindi", "hi");
-        languageCodes.put("Hmong", "hmn");
-        languageCodes.put("Hungarian", "hu");
-        languageCodes.put("Icelandic", "is");
-        languageCodes.put("Igbo", "ig");
-        languageCodes.put("Indonesian", "id");
-        languageCodes.put("Irish", "ga");
-        languageCodes.put("Italian", "it");
-        languageCodes.put("Japanese", "ja");
-        languageCodes.put("Javanese", "jw");
-        languageCodes.put("Kannada", "kn");
-        languageCodes.put("Kazakh", "kk");
-        languageCodes.put("Khmer", "km");
-        languageCodes.put("Korean", "ko");
-        languageCodes.put("Kurdish", "ku");
-        languageCodes.put("Kyrgyz", "ky");
-        languageCodes.put("Lao", "lo");
-        languageCodes.put("Latin", "la");
-        languageCodes.put("Latvian", "lv");
-        languageCodes.put("Lithuanian", "lt");
-        languageCodes.put("Luxembourgish", "lb");
-        languageCodes.put("Macedonian", "mk");
-        languageCodes.put("Malagasy", "mg");
-        languageCodes.put("Malay", "ms");
-        languageCodes.put("Malayalam", "ml");
-        languageCodes.put("Maltese", "mt");
-        languageCodes.put("Maori", "mi");
-        languageCodes.put("Marathi", "mr");
-        languageCodes.put("Mongolian", "mn");
-        languageCodes.put("Myanmar", "my");
-        languageCodes.put("Nepali", "ne");
-        languageCodes.put("Norwegian", "no");
-        languageCodes.put("Pashto", "ps");
-        languageCodes.put("Persian", "fa");
-        languageCodes.put("Polish", "pl");
-        languageCodes.put("Portuguese", "pt");
-        languageCodes.put("Punjabi", "pa");
-        languageCodes.put("Romanian", "ro");
-        languageCodes.put("Russian", "ru");
-        languageCodes.put("Samoan", "sm");
-        languageCodes.put("Scots Gaelic", "gd");
-        languageCodes.put("Serbian", "sr");
-        languageCodes.put("Sesotho", "st");
-        languageCodes.put("Shona", "sn");
-        languageCodes.put("Sindhi", "sd");
-        languageCodes.put("Sinhala", "si");
-        languageCodes.put("Slovak", "sk");
-        languageCodes.put("Slovenian", "sl");
-        languageCodes.put("Somali", "so");
-        languageCodes.put("Spanish", "es");
-        languageCodes.put("Sundanese", "su");
-        languageCodes.put("Swahili", "sw");
-        languageCodes.put("Swedish", "sv");
-        languageCodes.put("Tajik", "tg");
-        languageCodes.put("Tamil", "ta");
-        languageCodes.put("Telugu", "te");
-        languageCodes.put("Thai", "th");
-        languageCodes.put("Turkish", "tr");
-        languageCodes.put("Ukrainian", "uk");
-        languageCodes.put("Urdu", "ur");
-        languageCodes.put("Uzbek", "uz");
-        languageCodes.put("Vietnamese", "vi");
-        languageCodes.put("Welsh", "cy");
-        languageCodes.put("Xhosa", "xh");
-        languageCodes.put("Yiddish", "yi");
-        languageCodes.put("Yoruba", "yo");
-        languageCodes.put("Zulu", "zu");
+    // Статистика последнего (или текущего) запуска translate
+    public TranslationStats getStats() {
+        return stats;
+    }
+
+    // Метрики последнего (или текущего) запуска; также доступны через JMX
+    public TranslationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    // JSON-отчет с метриками, записывается в конце каждого запуска; null отключает
+    public void setMetricsReport(File metricsReport) {
+        this.metricsReport = metricsReport;
+    }
+
+    // Сервис перевода; по умолчанию google, можно выбрать через -Dmodtranslator.backend=<имя>
+    public void setBackend(TranslationBackend backend) {
+        this.backend = backend;
+    }
+
+    public void setBackend(String name) {
+        this.backend = TranslationBackend.load(name);
+    }
+
+    public TranslationBackend getBackend() {
+        return backend;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.backend = new GoogleTranslationBackend(endpoint);
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight requests must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Сколько JAR-файлов обрабатывается одновременно в translateAll
+    public void setJarParallelism(int jarParallelism) {
+        if (jarParallelism < 1) {
+            throw new IllegalArgumentException("JAR parallelism must be positive: " + jarParallelism);
+        }
+        this.jarParallelism = jarParallelism;
+    }
+
+    public void setLangFileParallelism(int langFileParallelism) {
+        if (langFileParallelism < 1) {
+            throw new IllegalArgumentException("Language file parallelism must be positive: " + langFileParallelism);
+        }
+        this.langFileParallelism = langFileParallelism;
+    }
+
+    // Сколько памяти занимают строки и переводы в очередях между стадиями, независимо от размера файлов
+    public void setBufferMemory(long bytes) {
+        if (bytes < 1024 * 1024) {
+            throw new IllegalArgumentException("Buffer memory must be at least 1 MB: " + bytes);
+        }
+        this.bufferMemoryBytes = bytes;
+    }
+
+    // 0 или меньше отключает ограничение частоты запросов
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    // Верхняя граница, до которой адаптивное управление может поднять частоту запросов
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    // false фиксирует частоту на setRequestsPerSecond; Retry-After соблюдается в любом случае
+    public void setAdaptiveRate(boolean adaptiveRate) {
+        this.adaptiveRate = adaptiveRate;
+    }
+
+    // Повторы одного запроса после 429, 5xx или сетевой ошибки; 0 отключает повторы
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries must not be negative: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryDelays(long baseDelayMillis, long maxDelayMillis) {
+        this.retryBaseDelayMillis = baseDelayMillis;
+        this.retryMaxDelayMillis = maxDelayMillis;
+    }
+
+    // Строки ("язык: текст"), которые не удалось перевести даже после повторов в последнем запуске
+    public List<String> getFailedStrings() {
+        return new ArrayList<>(deadLetters);
+    }
+
+    // Максимальный суммарный размер строк в одном запросе; 0 отключает батчинг
+    public void setBatchCharLimit(int batchCharLimit) {
+        this.batchCharLimit = batchCharLimit;
+    }
+
+    // null отключает кэш переводов
+    public void setTranslationMemoryDirectory(File directory) {
+        this.translationMemoryDirectory = directory;
+    }
+
+    public void setTranslationMemoryMaxBytes(long maxBytes) {
+        this.translationMemoryMaxBytes = maxBytes;
+    }
+
+    // Результат предыдущего перевода: переводятся только новые и измененные ключи.
+    // Каталог (ищется translated_<имя JAR>), переведенный JAR или языковой файл; null отключает
+    public void setPreviousTranslation(File previousTranslation) {
+        this.previousTranslation = previousTranslation;
+    }
+
+    // Журнал переведенных ключей рядом с выходным JAR: после остановки или сбоя
+    // повторный запуск продолжает с того же места; удаляется после успешного завершения
+    public void setCheckpointEnabled(boolean checkpointEnabled) {
+        this.checkpointEnabled = checkpointEnabled;
+    }
+
+    // Числа, ссылки, идентификаторы вида modid:item и строки почти без букв не отправляются на перевод
+    public void setSkipUntranslatable(boolean skipUntranslatable) {
+        this.skipUntranslatable = skipUntranslatable;
+    }
+
+    // Регулярные выражения для ключей, значения которых копируются без перевода
+    public void setSkipKeyPatterns(Collection<String> patterns) {
+        skipKeyPatterns.clear();
+        for (String pattern : patterns) {
+            skipKeyPatterns.add(Pattern.compile(pattern));
+        }
+    }
+
+    // Строки, где буквы составляют меньшую долю непробельных символов, не переводятся; 0 отключает
+    public void setMinLetterRatio(double minLetterRatio) {
+        if (minLetterRatio < 0 || minLetterRatio > 1) {
+            throw new IllegalArgumentException("Minimum letter ratio must be between 0 and 1: " + minLetterRatio);
+        }
+        this.minLetterRatio = minLetterRatio;
+    }
+
+    // Каталог с глоссариями <код языка>.tsv (например ru.tsv, zh-CN.tsv); null отключает
+    public void setGlossaryDirectory(File glossaryDirectory) {
+        this.glossaryDirectory = glossaryDirectory;
+    }
+
+    // Режим сборки для пакетного перевода: сначала все JAR сканируются и каждый уникальный текст
+    // сборки переводится один раз (самые частые первыми), затем JAR записываются из этой таблицы
+    public void setSharedDictionaryEnabled(boolean sharedDictionaryEnabled) {
+        this.sharedDictionaryEnabled = sharedDictionaryEnabled;
+    }
+
+    // Значения, различающиеся только числами и материалами ("Tier 1 Battery", "Copper Gear"),
+    // переводятся одним шаблоном
+    public void setTemplateReuseEnabled(boolean templateReuseEnabled) {
+        this.templateReuseEnabled = templateReuseEnabled;
+    }
+
+    // Перевод языковых файлов во вложенных JAR (META-INF/jarjar, META-INF/jars)
+    public void setNestedJarsEnabled(boolean nestedJarsEnabled) {
+        this.nestedJarsEnabled = nestedJarsEnabled;
+    }
+
+    // Сколько памяти могут занимать вложенные JAR, перестраиваемые одновременно
+    public void setNestedJarMemory(long bytes) {
+        if (bytes < 1024 * 1024) {
+            throw new IllegalArgumentException("Nested JAR memory must be at least 1 MB: " + bytes);
+        }
+        this.nestedJarMemoryBytes = bytes;
     }
 
     public String[] getAvailableLanguages() {
-        return languageCodes.keySet().toArray(new String[0]);
+        List<Language> languages = Language.all();
+        String[] names = new String[languages.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = languages.get(i).getName();
+        }
+        return names;
     }
 
+    // Незавершенные выходные JAR удаляются; журнал переведенных ключей остается для продолжения
     public void stopTranslation() {
         stopRequested = true;
-        if (currentOutputJarPath != null) {
+        backend.cancelAll();
+        TranslationExecutor runningExecutor = executor;
+        if (runningExecutor != null) {
+            runningExecutor.runPendingNow();
+        }
+        for (File outputFile : activeOutputs) {
             try {
-                File outputFile = new File(currentOutputJarPath);
                 if (outputFile.exists()) {
                     outputFile.delete();
                 }
@@ -200,320 +364,1639 @@ public class ModTranslator {
         }
     }
 
+    // Остается true после остановленного запуска до начала следующего
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
     public void translate(String inputJarPath, String outputDirectory, String targetLanguage) throws IOException {
+        translate(inputJarPath, outputDirectory, Collections.singletonList(targetLanguage));
+    }
+
+    // Все целевые языки записываются в один выходной JAR
+    public void translate(String inputJarPath, String outputDirectory, Collection<String> targetLanguages) throws IOException {
         LOGGER.info("Starting translation process");
         LOGGER.info("Input file: " + inputJarPath);
         LOGGER.info("Output directory: " + outputDirectory);
-        LOGGER.info("Target language: " + targetLanguage);
-
-        stopRequested = false;
-        File outputDir = new File(outputDirectory);
-        if (!outputDir.exists()) {
-            outputDir.mkdirs();
-        }
+        LOGGER.info("Target languages: " + targetLanguages);
 
+        List<Language> targets = validateLanguages(targetLanguages);
         File inputJar = new File(inputJarPath);
-        currentOutputJarPath = Paths.get(outputDirectory, "translated_" + inputJar.getName()).toString();
-
-        processJarFile(new JarFile(inputJar), new File(currentOutputJarPath), targetLanguage);
+        File outputFile = startRun(outputDirectory, inputJar);
+        previousLangFileEnabled = true;
+        try {
+            ProgressTracker progress = new ProgressTracker(null, (current, total) -> {
+                if (progressListener != null) {
+                    progressListener.onProgress(current, total);
+                }
+            });
+            translateJar(inputJar, outputFile, targets, progress);
+        } finally {
+            finishRun();
+        }
 
         if (stopRequested) {
             LOGGER.info("Translation stopped by user");
             if (progressListener != null) {
                 progressListener.onStopped();
             }
-            // Удаляем незавершенный файл
-            try {
-                File outputFile = new File(currentOutputJarPath);
-                if (outputFile.exists()) {
-                    outputFile.delete();
-                    LOGGER.info("Deleted incomplete output file");
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
         } else if (progressListener != null) {
             progressListener.onComplete();
         }
     }
 
-    private void processJarFile(JarFile jarFile, File outputFile, String targetLanguage) throws IOException {
-        LOGGER.info("Starting JAR processing: " + jarFile.getName());
-        String targetLangCode = convertToMinecraftLangCode(languageCodes.get(targetLanguage));
-        
-        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(outputFile))) {
-            Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements() && !stopRequested) {
-                JarEntry entry = entries.nextElement();
-                String entryName = entry.getName();
-                LOGGER.fine("Processing entry: " + entryName);
-                
-                // Копируем текущий файл как есть
-                JarEntry newEntry = new JarEntry(entryName);
-                jos.putNextEntry(newEntry);
-                try (InputStream is = jarFile.getInputStream(entry)) {
-                    byte[] buffer = new byte[1024];
-                    int bytesRead;
-                    while ((bytesRead = is.read(buffer)) != -1) {
-                        jos.write(buffer, 0, bytesRead);
+    // Переводит несколько модов за один запуск: JAR-файлы обрабатываются параллельно,
+    // но используют общий пул запросов, общий лимит частоты и общий кэш переводов.
+    // Ошибка в одном JAR не прерывает остальные; возвращаются ошибки по каждому файлу.
+    public Map<File, Exception> translateAll(List<File> inputJars, String outputDirectory, String targetLanguage,
+                                             BatchProgressListener listener) throws IOException {
+        return translateAll(inputJars, outputDirectory, Collections.singletonList(targetLanguage), listener);
+    }
+
+    public Map<File, Exception> translateAll(List<File> inputJars, String outputDirectory, Collection<String> targetLanguages,
+                                             BatchProgressListener listener) throws IOException {
+        LOGGER.info("Starting batch translation of " + inputJars.size() + " files");
+        LOGGER.info("Output directory: " + outputDirectory);
+        LOGGER.info("Target languages: " + targetLanguages);
+
+        List<Language> targets = validateLanguages(targetLanguages);
+
+        startRun(outputDirectory, null);
+        previousLangFileEnabled = inputJars.size() == 1;
+        if (!previousLangFileEnabled && isPreviousLangFile()) {
+            LOGGER.warning("Previous translation " + previousTranslation
+                + " is a single language file and cannot be matched to one of " + inputJars.size() + " JARs, ignoring it");
+        }
+        Map<File, Exception> failures = new ConcurrentHashMap<>();
+        ProgressTracker overall = new ProgressTracker(null, (current, total) -> {
+            if (listener != null) {
+                listener.onOverallProgress(current, total);
+            }
+        });
+        ExecutorService jarPool = newDaemonPool("jar", Math.min(jarParallelism, Math.max(1, inputJars.size())));
+        ExecutorService dictionaryPool = null;
+        try {
+            if (sharedDictionaryEnabled && inputJars.size() > 1) {
+                SharedDictionary dictionary = scanModpack(inputJars, targets, jarPool);
+                sharedDictionary = dictionary;
+                // Перевод словаря идет в фоне: JAR начинают записываться сразу и ждут только свои строки
+                dictionaryPool = newDaemonPool("dictionary", 1);
+                dictionaryPool.submit(() -> translateSharedDictionary(dictionary, targets));
+            }
+            List<Future<?>> jobs = new ArrayList<>();
+            for (File inputJar : inputJars) {
+                jobs.add(jarPool.submit(() -> {
+                    ProgressTracker progress = new ProgressTracker(overall, (current, total) -> {
+                        if (listener != null) {
+                            listener.onJarProgress(inputJar, current, total);
+                        }
+                    });
+                    Exception error = null;
+                    try {
+                        translateJar(inputJar, outputFileFor(outputDirectory, inputJar), targets, progress);
+                    } catch (Exception e) {
+                        LOGGER.warning("Failed to translate " + inputJar + ": " + e.getMessage());
+                        failures.put(inputJar, e);
+                        error = e;
                     }
-                }
-                jos.closeEntry();
-                
-                // Если это языковой файл, создаем дополнительный переведенный файл
-                if (isLanguageFile(entryName)) {
-                    String newFileName = entryName.toLowerCase().replace("en_us", targetLangCode);
-                    LOGGER.info("Creating additional language file: " + newFileName);
-                    
-                    JarEntry translatedEntry = new JarEntry(newFileName);
-                    jos.putNextEntry(translatedEntry);
-                    
-                    byte[] translatedContent = translateLangFile(jarFile.getInputStream(entry), targetLanguage);
-                    jos.write(translatedContent);
-                    LOGGER.info("Finished creating translated file: " + newFileName);
-                    jos.closeEntry();
-                }
+                    if (listener != null) {
+                        listener.onJarFinished(inputJar, error);
+                    }
+                }));
+            }
+            for (Future<?> job : jobs) {
+                await(job);
             }
+        } finally {
+            jarPool.shutdown();
+            if (dictionaryPool != null) {
+                dictionaryPool.shutdown();
+            }
+            sharedDictionary = null;
+            finishRun();
         }
 
-        if (stopRequested) {
-            LOGGER.info("Translation stopped by user");
-            if (outputFile.exists()) {
-                outputFile.delete();
-                LOGGER.info("Deleted incomplete output file");
+        LOGGER.info("Batch translation finished: " + (inputJars.size() - failures.size()) + " succeeded, "
+            + failures.size() + " failed");
+        if (progressListener != null) {
+            if (stopRequested) {
+                progressListener.onStopped();
+            } else {
+                progressListener.onComplete();
             }
-        } else {
-            LOGGER.info("JAR processing completed successfully");
         }
+        return failures;
     }
 
-    private boolean isLanguageFile(String fileName) {
-        LOGGER.info("Checking file: " + fileName);
-        String lowerFileName = fileName.toLowerCase();
-        return lowerFileName.endsWith("en_us.lang") || lowerFileName.endsWith("en_us.json");
+    // Фаза 1 режима сборки: языковые файлы всех JAR читаются параллельно, тексты для перевода
+    // считаются по каждому целевому языку. Нечитаемый JAR пропускается, ошибку сообщит его перевод.
+    private SharedDictionary scanModpack(List<File> inputJars, List<Language> targetLanguages,
+                                         ExecutorService jarPool) throws IOException {
+        long start = System.nanoTime();
+        SharedDictionary dictionary = new SharedDictionary();
+        List<Future<?>> scans = new ArrayList<>();
+        for (File inputJar : inputJars) {
+            scans.add(jarPool.submit(() -> {
+                PlaceholderTokenizer tokenizer = new PlaceholderTokenizer();
+                Map<Language, Map<String, Integer>> jarCounts = new HashMap<>();
+                try (FileChannel channel = FileChannel.open(inputJar.toPath(), StandardOpenOption.READ)) {
+                    ZipDirectory archive = readArchive(channel, inputJar);
+                    for (ZipDirectory.Entry entry : archive.entries()) {
+                        if (!isLanguageFile(entry.name) || stopRequested) {
+                            continue;
+                        }
+                        try (InputStream is = archive.openStream(entry)) {
+                            LangFileInput.readValues(is, (key, value) -> {
+                                for (Language targetLanguage : targetLanguages) {
+                                    PlaceholderTokenizer.Template template = prepare(tokenizer, glossary(targetLanguage), key, value);
+                                    if (template != null && needsRequest(template)) {
+                                        jarCounts.computeIfAbsent(targetLanguage, k -> new HashMap<>())
+                                            .merge(template.text, 1, Integer::sum);
+                                    }
+                                }
+                            });
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to scan " + inputJar + " for the shared dictionary: " + e.getMessage());
+                    return;
+                }
+                for (Map.Entry<Language, Map<String, Integer>> counts : jarCounts.entrySet()) {
+                    dictionary.addCounts(counts.getKey(), counts.getValue());
+                }
+            }));
+        }
+        for (Future<?> scan : scans) {
+            await(scan);
+        }
+        dictionary.freeze();
+        for (Language targetLanguage : targetLanguages) {
+            long occurrences = dictionary.occurrences(targetLanguage);
+            int unique = dictionary.translations(targetLanguage).size();
+            LOGGER.info(String.format("Shared dictionary for %s: %d strings in %d JARs, %d unique (%d requests saved), scanned in %d ms",
+                targetLanguage, occurrences, inputJars.size(), unique, occurrences - unique,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return dictionary;
     }
 
-    private byte[] translateLangFile(InputStream is, String targetLanguage) throws IOException {
-        LOGGER.info("Starting language file translation");
-        
-        // Читаем весь файл в строку для определения формата
-        ByteArrayOutputStream result = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-        int length;
-        while ((length = is.read(buffer)) != -1) {
-            result.write(buffer, 0, length);
-        }
-        String content = result.toString(StandardCharsets.UTF_8.name());
-        
-        // Определяем формат файла
-        boolean isJsonFormat = content.trim().startsWith("{");
-        LOGGER.info("File format detected: " + (isJsonFormat ? "JSON" : "LANG"));
-        
-        if (isJsonFormat) {
-            try {
-                JsonObject langJson = gson.fromJson(content, JsonObject.class);
-                JsonObject translatedJson = new JsonObject();
-                int totalEntries = langJson.size();
-                int currentEntry = 0;
-                LOGGER.info("Found " + totalEntries + " entries in JSON file");
-
-                for (Map.Entry<String, JsonElement> entry : langJson.entrySet()) {
-                    if (stopRequested) break;
-                    
-                    String key = entry.getKey();
-                    String value = entry.getValue().getAsString();
-                    LOGGER.fine("Processing JSON entry " + currentEntry + "/" + totalEntries + ": " + key);
-
-                    List<String> colorCodes = new ArrayList<>();
-                    java.util.regex.Matcher matcher = COLOR_CODE_PATTERN.matcher(value);
-                    while (matcher.find()) {
-                        colorCodes.add(matcher.group());
-                    }
-                    String textToTranslate = COLOR_CODE_PATTERN.matcher(value).replaceAll("");
-                    
-                    String translatedText = translateText(textToTranslate, targetLanguage);
-                    
-                    // Восстанавливаем цветовые коды
-                    for (String colorCode : colorCodes) {
-                        translatedText = colorCode + translatedText;
+    // Фаза 2 режима сборки: каждый уникальный текст переводится один раз, самые частые - первыми
+    private void translateSharedDictionary(SharedDictionary dictionary, List<Language> targetLanguages) {
+        try {
+            for (Language targetLanguage : targetLanguages) {
+                Map<String, CompletableFuture<String>> translations = dictionary.translations(targetLanguage);
+                // Шаблоны считаются по уникальным текстам всей сборки
+                TemplateSlots.Usage templates = null;
+                if (templateSlots != null) {
+                    templates = new TemplateSlots.Usage(templateSlots);
+                    for (String text : translations.keySet()) {
+                        templates.add(targetLanguage, text);
                     }
-                    
-                    translatedJson.addProperty(key, translatedText);
-                    currentEntry++;
-                    if (progressListener != null) {
-                        progressListener.onProgress(currentEntry, totalEntries);
+                    templates.freeze();
+                }
+                TranslationBatcher batcher = new TranslationBatcher(executor, batchCharLimit,
+                    texts -> translateBatch(texts, targetLanguage),
+                    text -> translateText(text, targetLanguage));
+                for (Map.Entry<String, CompletableFuture<String>> entry : translations.entrySet()) {
+                    if (stopRequested) {
+                        break;
                     }
+                    String text = entry.getKey();
+                    CompletableFuture<String> translation = entry.getValue();
+                    requestTranslation(text, targetLanguage, templates, batcher).whenComplete((translatedText, error) ->
+                        translation.complete(error == null ? translatedText : null));
                 }
+                batcher.flush();
+                stats.addFile(0, translations.size());
+            }
+        } catch (RuntimeException e) {
+            // Оставшиеся строки считаются непереведенными: файлы повторят их сами
+            LOGGER.log(Level.WARNING, "Shared dictionary translation failed", e);
+            dictionary.completeRemaining(false);
+        } finally {
+            // После остановки оставшиеся строки не переводятся; файлы не должны ждать их вечно
+            if (stopRequested) {
+                dictionary.completeRemaining(true);
+            }
+        }
+    }
 
-                if (stopRequested) {
-                    throw new IOException("Translation stopped by user");
-                }
+    // Все .jar в каталоге (без вложенных каталогов), по имени
+    public static List<File> findJars(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
 
-                return gson.toJson(translatedJson).getBytes(StandardCharsets.UTF_8);
-            } catch (JsonSyntaxException e) {
-                LOGGER.severe("Error parsing JSON language file: " + e.getMessage());
-                throw new IOException("Invalid JSON format in language file", e);
+    // Названия языков разрешаются один раз за запуск; дальше по конвейеру идут объекты Language
+    private List<Language> validateLanguages(Collection<String> targetLanguages) {
+        if (targetLanguages.isEmpty()) {
+            throw new IllegalArgumentException("No target language selected");
+        }
+        Set<Language> targets = new LinkedHashSet<>();
+        for (String name : targetLanguages) {
+            Language language = Language.forName(name);
+            if (language == null) {
+                throw new IllegalArgumentException("Unsupported language: " + name);
             }
-        } else {
-            // Обрабатываем .lang формат
-            BufferedReader reader = new BufferedReader(new StringReader(content));
-            StringBuilder langResult = new StringBuilder();
-            String line;
-            int lineNumber = 0;
-            int totalLines = content.split("\n").length;
-            
-            while ((line = reader.readLine()) != null && !stopRequested) {
-                lineNumber++;
-                LOGGER.fine("Processing line " + lineNumber + ": " + line);
-                
-                if (line.trim().isEmpty() || !line.contains("=")) {
-                    LOGGER.fine("Skipping line " + lineNumber + " (empty or no translation needed)");
-                    langResult.append(line).append("\n");
-                    continue;
-                }
+            targets.add(language);
+        }
+        return new ArrayList<>(targets);
+    }
 
-                String[] parts = line.split("=", 2);
-                if (parts.length != 2) {
-                    LOGGER.fine("Skipping malformed line " + lineNumber);
-                    langResult.append(line).append("\n");
-                    continue;
-                }
+    private File startRun(String outputDirectory, File inputJar) {
+        stopRequested = false;
+        stats = new TranslationStats();
+        metrics = new TranslationMetrics();
+        deadLetters.clear();
+        File outputDir = new File(outputDirectory);
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
 
-                String key = parts[0];
-                String value = parts[1];
-                LOGGER.fine("Key: " + key + ", Original value: " + value);
+        RateLimiter rateLimiter = new RateLimiter(requestsPerSecond, Math.max(1, parallelism));
+        rateController = new AdaptiveRateController(rateLimiter, MIN_REQUESTS_PER_SECOND,
+            adaptiveRate ? maxRequestsPerSecond : requestsPerSecond);
+        AdaptiveRateController controller = rateController;
+        metrics.setRequestRate(controller::getRate);
+        metrics.register();
+        executor = new TranslationExecutor(parallelism, maxInFlight, rateLimiter, () -> stopRequested);
+        langFilePool = newDaemonPool("lang-file", langFileParallelism);
+        nestedJarMemoryLimitKilobytes = (int) Math.min(Integer.MAX_VALUE, nestedJarMemoryBytes / 1024);
+        nestedJarMemory = new Semaphore(nestedJarMemoryLimitKilobytes);
+        nestedJarPool = newCachedDaemonPool("nested-jar");
+        lineBudget = new BufferBudget(bufferMemoryBytes / 2, metrics);
+        outputBudget = new BufferBudget(bufferMemoryBytes / 2, metrics);
+        translationMemory = openTranslationMemory();
+        untranslatableFilter = skipUntranslatable
+            ? new UntranslatableFilter(new ArrayList<>(skipKeyPatterns), minLetterRatio)
+            : null;
+        glossaries.clear();
+        templateSlots = templateReuseEnabled ? TemplateSlots.defaults() : null;
+        templateCache.clear();
+        return inputJar != null ? outputFileFor(outputDirectory, inputJar) : null;
+    }
 
-                List<String> colorCodes = new ArrayList<>();
-                java.util.regex.Matcher matcher = COLOR_CODE_PATTERN.matcher(value);
-                while (matcher.find()) {
-                    colorCodes.add(matcher.group());
-                }
-                String textToTranslate = COLOR_CODE_PATTERN.matcher(value).replaceAll("");
-                LOGGER.fine("Text to translate (without color codes): " + textToTranslate);
+    private void finishRun() {
+        langFilePool.shutdown();
+        langFilePool = null;
+        nestedJarPool.shutdown();
+        nestedJarPool = null;
+        templateCache.clear();
+        executor.close();
+        executor = null;
+        closeTranslationMemory();
+        if (!deadLetters.isEmpty()) {
+            LOGGER.warning(deadLetters.size() + " strings were left untranslated after retries: " + deadLetters);
+        }
+        metrics.finish();
+        LOGGER.info("Translation statistics: " + stats + "; final request rate "
+            + String.format("%.1f", rateController.getRate()) + "/s");
+        LOGGER.info("Translation metrics: " + metrics);
+        if (metricsReport != null) {
+            try {
+                metrics.writeReport(metricsReport);
+            } catch (IOException e) {
+                LOGGER.warning("Failed to write metrics report: " + e.getMessage());
+            }
+        }
+        notifyMetrics();
+    }
 
-                if (stopRequested) {
-                    break;
-                }
+    private void notifyMetrics() {
+        MetricsListener listener = metricsListener;
+        if (listener != null) {
+            listener.onMetrics(metrics);
+        }
+    }
 
-                String translatedText = translateText(textToTranslate, targetLanguage);
-                LOGGER.fine("Translated text: " + translatedText);
+    private static File outputFileFor(String outputDirectory, File inputJar) {
+        return Paths.get(outputDirectory, "translated_" + inputJar.getName()).toFile();
+    }
 
-                if (stopRequested) {
-                    break;
-                }
+    private static File journalFileFor(File outputFile) {
+        return new File(outputFile.getPath() + ".journal");
+    }
 
-                for (String colorCode : colorCodes) {
-                    translatedText = colorCode + translatedText;
-                }
-                LOGGER.fine("Final text with color codes: " + translatedText);
+    private static ExecutorService newDaemonPool(String name, int size) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-                langResult.append(key).append("=").append(translatedText).append("\n");
-                
-                if (progressListener != null) {
-                    progressListener.onProgress(lineNumber, totalLines);
+    // Число потоков ограничено памятью под вложенные JAR: каждый поток держит свой JAR
+    private static ExecutorService newCachedDaemonPool(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void translateJar(File inputJar, File outputFile, List<Language> targetLanguages, ProgressTracker progress) throws IOException {
+        activeOutputs.add(outputFile);
+        try (FileChannel channel = FileChannel.open(inputJar.toPath(), StandardOpenOption.READ)) {
+            ZipDirectory archive = readArchive(channel, inputJar);
+            TranslationJournal journal = checkpointEnabled ? TranslationJournal.open(journalFileFor(outputFile)) : null;
+            try {
+                processJarFile(inputJar.getName(), archive, outputFile, targetLanguages, journal, progress);
+                if (journal != null && !stopRequested) {
+                    journal.delete();
+                }
+            } finally {
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        LOGGER.warning("Failed to close translation journal: " + e.getMessage());
+                    }
                 }
             }
+        } finally {
+            activeOutputs.remove(outputFile);
+            notifyMetrics();
+        }
+    }
 
-            if (stopRequested) {
-                throw new IOException("Translation stopped by user");
+    // Разбор значения; null, если переводить нечего и значение копируется как есть.
+    // Один и тот же разбор используется при переводе файла и при сканировании сборки.
+    private PlaceholderTokenizer.Template prepare(PlaceholderTokenizer tokenizer, Glossary glossary, String key, String value) {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize(value);
+        if (template.isBlank()
+                || (untranslatableFilter != null && untranslatableFilter.isUntranslatable(key, template.text))) {
+            return null;
+        }
+        // Термины глоссария заменяются маркерами и получают фиксированный перевод при сборке значения
+        return glossary != null ? glossary.apply(template) : template;
+    }
+
+    // После подстановки терминов глоссария в тексте может не остаться слов
+    private static boolean needsRequest(PlaceholderTokenizer.Template template) {
+        return template.termCount() == 0 || UntranslatableFilter.letterRatio(template.text) > 0;
+    }
+
+    private static ZipDirectory readArchive(FileChannel channel, File jar) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("File is too large: " + jar);
+        }
+        return ZipDirectory.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    private Glossary glossary(Language targetLanguage) {
+        if (glossaryDirectory == null) {
+            return null;
+        }
+        return glossaries.computeIfAbsent(targetLanguage.getCode(), code -> {
+            File file = new File(glossaryDirectory, code + ".tsv");
+            if (!file.isFile()) {
+                return Optional.empty();
+            }
+            try {
+                Glossary glossary = Glossary.load(file);
+                LOGGER.info("Loaded " + glossary.size() + " glossary terms for " + targetLanguage + " from " + file);
+                return Optional.of(glossary);
+            } catch (IOException e) {
+                LOGGER.warning("Glossary " + file + " is unavailable: " + e.getMessage());
+                return Optional.empty();
             }
+        }).orElse(null);
+    }
 
-            LOGGER.info("Finished translating language file, processed " + lineNumber + " lines");
-            return langResult.toString().getBytes(StandardCharsets.UTF_8);
+    private TranslationMemory openTranslationMemory() {
+        if (translationMemoryDirectory == null) {
+            return null;
+        }
+        // У каждого сервиса своя память: переводы тестового локального сервиса не попадают в переводы Google
+        File directory = new File(translationMemoryDirectory, backend.getName());
+        try {
+            TranslationMemory memory = TranslationMemory.open(directory, translationMemoryMaxBytes, 10_000);
+            LOGGER.info("Translation memory opened: " + directory + ", " + memory.size() + " entries");
+            return memory;
+        } catch (IOException e) {
+            LOGGER.warning("Translation memory is unavailable, translating without it: " + e.getMessage());
+            return null;
         }
     }
 
-    private String translateText(String text, String targetLanguage) {
-        if (text.trim().isEmpty()) {
-            return text;
+    private void closeTranslationMemory() {
+        if (translationMemory == null) {
+            return;
         }
-        
+        LOGGER.info("Translation memory: " + translationMemory.getStats());
+        try {
+            translationMemory.close();
+        } catch (IOException e) {
+            LOGGER.warning("Failed to close translation memory: " + e.getMessage());
+        }
+        translationMemory = null;
+    }
+
+    private void processJarFile(String jarName, ZipDirectory archive, File outputFile, List<Language> targetLanguages,
+                                TranslationJournal journal, ProgressTracker progress) throws IOException {
+        LOGGER.info("Starting JAR processing: " + jarName);
+        ArchiveScan scan = scanArchive(archive, targetLanguages, 0);
+        Set<String> previousNames = new HashSet<>(scan.generatedNames);
+        for (ZipDirectory.Entry entry : scan.languageFiles) {
+            previousNames.add(entry.name.toLowerCase());
+        }
+        // Загружается до открытия выходного файла: он может совпадать с предыдущим результатом
+        PreviousTranslation previous = loadPreviousTranslation(jarName, previousNames);
+
+        try (RawZipWriter writer = new RawZipWriter(new FileOutputStream(outputFile).getChannel())) {
+            rewriteArchive(jarName, archive, scan, writer, targetLanguages, previous, journal, progress, 0);
+        }
+
         if (stopRequested) {
-            return text;
+            LOGGER.info("Translation stopped by user");
+            if (outputFile.exists()) {
+                outputFile.delete();
+                LOGGER.info("Deleted incomplete output file, translated keys are kept in the journal");
+            }
+        } else {
+            LOGGER.info("JAR processing completed successfully");
         }
+    }
 
-        try {
-            Thread.sleep(50);
-            
-            String targetLangCode = languageCodes.get(targetLanguage);
-            if (targetLangCode == null) {
-                LOGGER.warning("Unsupported language: " + targetLanguage);
-                throw new IllegalArgumentException("Unsupported language: " + targetLanguage);
-            }
-
-            String encodedText = URLEncoder.encode(text, "UTF-8");
-            String url = String.format(
-                "https://translate.googleapis.com/translate_a/single?client=gtx&sl=en&tl=%s&dt=t&q=%s",
-                targetLangCode,
-                encodedText
-            );
-
-            LOGGER.fine("Translating text: " + text);
-            Request request = new Request.Builder()
-                .url(url)
-                .header("User-Agent", "Mozilla/5.0")
-                .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    LOGGER.warning("Translation request failed: " + response.code());
-                    return text;
+    // Языковые файлы и вложенные JAR архива, найденные в центральном каталоге
+    private static final class ArchiveScan {
+        final List<ZipDirectory.Entry> languageFiles = new ArrayList<>();
+        final List<ZipDirectory.Entry> nestedJars = new ArrayList<>();
+        // Имена новых файлов известны заранее, одноименные записи исходного архива заменяются
+        final Set<String> generatedNames = new HashSet<>();
+    }
+
+    private ArchiveScan scanArchive(ZipDirectory archive, List<Language> targetLanguages, int depth) {
+        ArchiveScan scan = new ArchiveScan();
+        for (ZipDirectory.Entry entry : archive.entries()) {
+            metrics.addEntryScanned();
+            if (isLanguageFile(entry.name)) {
+                metrics.addLanguageFile();
+                scan.languageFiles.add(entry);
+                for (Language targetLanguage : targetLanguages) {
+                    scan.generatedNames.add(translatedFileName(entry.name, targetLanguage));
                 }
+            } else if (nestedJarsEnabled && depth < MAX_NESTED_JAR_DEPTH && isNestedJar(entry.name)) {
+                scan.nestedJars.add(entry);
+            }
+        }
+        return scan;
+    }
 
-                String responseBody = response.body().string();
-                JsonArray jsonArray = gson.fromJson(responseBody, JsonArray.class);
-                if (jsonArray != null && jsonArray.size() > 0) {
-                    JsonArray translationArray = jsonArray.get(0).getAsJsonArray();
-                    if (translationArray != null && translationArray.size() > 0) {
-                        StringBuilder translatedText = new StringBuilder();
-                        for (int i = 0; i < translationArray.size(); i++) {
-                            JsonArray translationPart = translationArray.get(i).getAsJsonArray();
-                            if (translationPart != null && translationPart.size() > 0) {
-                                translatedText.append(translationPart.get(0).getAsString());
-                            }
+    // Языковые файлы и вложенные JAR обрабатываются параллельно с копированием остальных записей.
+    // path - путь архива для журнала и логов: имя JAR или путь вложенного JAR внутри внешнего
+    private void rewriteArchive(String path, ZipDirectory archive, ArchiveScan scan, RawZipWriter writer,
+                                List<Language> targetLanguages, PreviousTranslation previous, TranslationJournal journal,
+                                ProgressTracker progress, int depth) throws IOException {
+        // Ключи всех языковых файлов считаются до начала перевода, чтобы у JAR был один точный итог.
+        // В том же проходе считаются шаблоны: через слоты переводятся только общие для нескольких текстов
+        TemplateSlots.Usage templates = templateSlots != null ? new TemplateSlots.Usage(templateSlots) : null;
+        PlaceholderTokenizer tokenizer = new PlaceholderTokenizer();
+        int totalEntries = 0;
+        for (ZipDirectory.Entry entry : scan.languageFiles) {
+            try (InputStream is = archive.openStream(entry)) {
+                totalEntries += LangFileInput.countEntries(is, templates == null ? null : (key, value) -> {
+                    for (Language targetLanguage : targetLanguages) {
+                        PlaceholderTokenizer.Template template = prepare(tokenizer, glossary(targetLanguage), key, value);
+                        if (template != null && needsRequest(template)) {
+                            templates.add(targetLanguage, template.text);
                         }
-                        LOGGER.fine("Translation successful: " + translatedText.toString());
-                        return translatedText.toString();
                     }
-                }
-                LOGGER.warning("Failed to parse translation response");
-            }
-        } catch (Exception e) {
-            LOGGER.severe("Error translating text: " + text + "\nError: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return text;
-    }
-
-    private String convertToMinecraftLangCode(String langCode) {
-        // Специальные случаи
-        switch (langCode.toLowerCase()) {
-            case "zh-cn": return "zh_cn";
-            case "zh-tw": return "zh_tw";
-            case "fil": return "tl_ph";  // Tagalog/Filipino
-            case "jv": return "jv_id";   // Javanese
-            case "he": return "he_il";   // Hebrew
-            case "ar": return "ar_sa";   // Arabic
-            case "fa": return "fa_ir";   // Persian
-            case "hi": return "hi_in";   // Hindi
-            case "ta": return "ta_in";   // Tamil
-            case "kn": return "kn_in";   // Kannada
-            case "th": return "th_th";   // Thai
-            case "ko": return "ko_kr";   // Korean
-            case "ja": return "ja_jp";   // Japanese
-            case "ba": return "ba_ru";   // Bashkir
-            case "tt": return "tt_ru";   // Tatar
-            case "be": return "be_by";   // Belarusian
-            case "uk": return "uk_ua";   // Ukrainian
-            case "kk": return "kk_kz";   // Kazakh
-            case "hy": return "hy_am";   // Armenian
-            case "ka": return "ka_ge";   // Georgian
-            case "el": return "el_gr";   // Greek
-            case "bg": return "bg_bg";   // Bulgarian
-            case "mk": return "mk_mk";   // Macedonian
+                });
+            }
         }
-        
-        // По умолчанию дублируем код (например, "ru" -> "ru_ru")
-        return langCode.toLowerCase() + "_" + langCode.toLowerCase();
+        if (templates != null) {
+            templates.freeze();
+        }
+        progress.addTotal(totalEntries * targetLanguages.size());
+        LOGGER.info("Found " + scan.languageFiles.size() + " language files with " + totalEntries + " entries and "
+            + scan.nestedJars.size() + " nested JARs in " + path);
+
+        // Записи вложенных архивов в журнале отличаются путем: "outer.jar!/META-INF/jars/inner.jar!/assets/..."
+        String entryPrefix = depth > 0 ? path + "!/" : "";
+        Map<String, CompletableFuture<Map<Language, DeflatedEntry>>> translatedFiles = new LinkedHashMap<>();
+        List<NestedJar> nestedJars = new ArrayList<>();
+        boolean traceEntries = LOGGER.isLoggable(Level.FINE);
+        try {
+            // Перевод начинается сразу, копирование остальных записей идет параллельно с ним
+            for (ZipDirectory.Entry entry : scan.languageFiles) {
+                String entryName = entry.name;
+                LOGGER.info("Scheduling translation of language file: " + entryPrefix + entryName);
+                CompletableFuture<Map<Language, DeflatedEntry>> translatedFile = new CompletableFuture<>();
+                translatedFiles.put(entryName, translatedFile);
+                langFilePool.execute(() -> {
+                    if (translatedFile.isCancelled()) {
+                        return;
+                    }
+                    try (InputStream is = archive.openStream(entry)) {
+                        Map<Language, DeflatedEntry> translations = translateLangFile(is, entryPrefix + entryName,
+                            targetLanguages, depth == 0 ? previous : null, templates, journal, progress);
+                        // Отмененный результат никто не запишет: память и временные файлы освобождаются здесь
+                        if (!translatedFile.complete(translations)) {
+                            release(translations);
+                        }
+                    } catch (Throwable e) {
+                        translatedFile.completeExceptionally(e);
+                    }
+                });
+            }
+            for (ZipDirectory.Entry entry : scan.nestedJars) {
+                NestedJar nestedJar = submitNestedJar(entryPrefix + entry.name, archive, entry, targetLanguages,
+                    journal, progress, depth + 1);
+                if (nestedJar != null) {
+                    nestedJars.add(nestedJar);
+                }
+            }
+            Set<String> rebuiltNames = new HashSet<>();
+            for (NestedJar nestedJar : nestedJars) {
+                rebuiltNames.add(nestedJar.entry.name);
+            }
+
+            for (ZipDirectory.Entry entry : archive.entries()) {
+                if (stopRequested) {
+                    break;
+                }
+                String entryName = entry.name;
+                if (traceEntries) {
+                    LOGGER.fine("Processing entry: " + entryName);
+                }
+                if (scan.generatedNames.contains(entryName)) {
+                    LOGGER.info("Replacing existing language file: " + entryName);
+                    continue;
+                }
+                if (rebuiltNames.contains(entryName)) {
+                    continue;
+                }
+
+                // Копируем текущий файл как есть, без распаковки и повторного сжатия
+                writer.copyRaw(archive, entry);
+                metrics.addBytesCopied(entry.compressedSize);
+            }
+
+            for (Map.Entry<String, CompletableFuture<Map<Language, DeflatedEntry>>> translatedFile : translatedFiles.entrySet()) {
+                Map<Language, DeflatedEntry> translations = await(translatedFile.getValue());
+                try {
+                    if (stopRequested) {
+                        break;
+                    }
+                    for (Map.Entry<Language, DeflatedEntry> translation : translations.entrySet()) {
+                        String newFileName = translatedFileName(translatedFile.getKey(), translation.getKey());
+                        writer.putEntry(newFileName, translation.getValue());
+                        metrics.addBytesWritten(translation.getValue().size());
+                        LOGGER.info("Finished creating translated file: " + entryPrefix + newFileName);
+                    }
+                } finally {
+                    release(translations);
+                }
+            }
+
+            for (NestedJar nestedJar : nestedJars) {
+                byte[] rebuilt = await(nestedJar.result);
+                if (stopRequested) {
+                    break;
+                }
+                // Вложенный JAR, который не удалось перестроить, копируется без изменений
+                if (rebuilt != null) {
+                    writer.putEntry(nestedJar.entry.name, rebuilt);
+                    metrics.addBytesWritten(rebuilt.length);
+                } else {
+                    writer.copyRaw(archive, nestedJar.entry);
+                    metrics.addBytesCopied(nestedJar.entry.compressedSize);
+                }
+                nestedJar.release();
+            }
+        } finally {
+            for (CompletableFuture<Map<Language, DeflatedEntry>> translatedFile : translatedFiles.values()) {
+                // Готовый, но не записанный результат освобождается; еще не готовый - в задаче перевода
+                if (!translatedFile.cancel(false) && !translatedFile.isCompletedExceptionally()) {
+                    release(translatedFile.join());
+                }
+            }
+            for (NestedJar nestedJar : nestedJars) {
+                nestedJar.result.cancel(false);
+                nestedJar.release();
+            }
+        }
+    }
+
+    private static void release(Map<Language, DeflatedEntry> translations) {
+        for (DeflatedEntry translation : translations.values()) {
+            translation.release();
+        }
+    }
+
+    // Вложенный JAR, который перестраивается в памяти; память резервируется до записи результата
+    private final class NestedJar {
+        final ZipDirectory.Entry entry;
+        final int reservedKilobytes;
+        Future<byte[]> result;
+        private boolean released;
+
+        NestedJar(ZipDirectory.Entry entry, int reservedKilobytes) {
+            this.entry = entry;
+            this.reservedKilobytes = reservedKilobytes;
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                nestedJarMemory.release(reservedKilobytes);
+            }
+        }
+    }
+
+    // Forge jarjar (META-INF/jarjar/) и Fabric (META-INF/jars/) хранят зависимости отдельными JAR.
+    // Вложенный JAR читается в память, переводится рекурсивно и записывается обратно; null - копируется как есть
+    private NestedJar submitNestedJar(String path, ZipDirectory archive, ZipDirectory.Entry entry,
+                                      List<Language> targetLanguages, TranslationJournal journal,
+                                      ProgressTracker progress, int depth) throws IOException {
+        // Исходные байты и перестроенный архив находятся в памяти одновременно
+        long need = 2 * Math.max(entry.size, entry.compressedSize);
+        int kilobytes = (int) Math.min(Integer.MAX_VALUE, (need + 1023) / 1024);
+        if (entry.size > Integer.MAX_VALUE / 2 || kilobytes > nestedJarMemoryLimitKilobytes) {
+            LOGGER.warning("Nested JAR " + path + " is too large to translate in memory, copying it unchanged");
+            return null;
+        }
+        // Внешний JAR ждет свободной памяти; вложенный внутри вложенного не ждет, чтобы задачи,
+        // уже держащие память, не ждали друг друга
+        if (depth == 1 ? !acquireNestedJarMemory(kilobytes) : !nestedJarMemory.tryAcquire(kilobytes)) {
+            if (!stopRequested) {
+                LOGGER.warning("No memory left for nested JAR " + path + ", copying it unchanged");
+            }
+            return null;
+        }
+        NestedJar nestedJar = new NestedJar(entry, kilobytes);
+        try {
+            nestedJar.result = nestedJarPool.submit(() -> {
+                try {
+                    return rebuildNestedJar(path, archive, entry, targetLanguages, journal, progress, depth);
+                } catch (IOException e) {
+                    if (!stopRequested) {
+                        LOGGER.warning("Failed to translate nested JAR " + path + ", copying it unchanged: " + e.getMessage());
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            nestedJar.release();
+            throw e;
+        }
+        return nestedJar;
+    }
+
+    private byte[] rebuildNestedJar(String path, ZipDirectory outer, ZipDirectory.Entry entry, List<Language> targetLanguages,
+                                    TranslationJournal journal, ProgressTracker progress, int depth) throws IOException {
+        byte[] bytes = new byte[(int) entry.size];
+        try (DataInputStream is = new DataInputStream(outer.openStream(entry))) {
+            is.readFully(bytes);
+        }
+        ZipDirectory archive = ZipDirectory.read(ByteBuffer.wrap(bytes));
+        ArchiveScan scan = scanArchive(archive, targetLanguages, depth);
+        if (scan.languageFiles.isEmpty() && scan.nestedJars.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length + bytes.length / 4);
+        try (RawZipWriter writer = new RawZipWriter(Channels.newChannel(output))) {
+            rewriteArchive(path, archive, scan, writer, targetLanguages, null, journal, progress, depth);
+        }
+        if (stopRequested) {
+            return null;
+        }
+        LOGGER.info("Rebuilt nested JAR " + path);
+        return output.toByteArray();
+    }
+
+    private boolean acquireNestedJarMemory(int kilobytes) throws InterruptedIOException {
+        try {
+            while (!stopRequested) {
+                if (nestedJarMemory.tryAcquire(kilobytes, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for nested JAR memory");
+        }
+    }
+
+    private static boolean isNestedJar(String entryName) {
+        String lowerName = entryName.toLowerCase();
+        return lowerName.endsWith(".jar") && (lowerName.startsWith("meta-inf/jarjar/") || lowerName.startsWith("meta-inf/jars/"));
+    }
+
+    private PreviousTranslation loadPreviousTranslation(String jarName, Set<String> entryNames) throws IOException {
+        if (previousTranslation == null) {
+            return null;
+        }
+        File file = previousTranslation.isDirectory()
+            ? new File(previousTranslation, "translated_" + jarName)
+            : previousTranslation;
+        if (!file.isFile()) {
+            LOGGER.info("No previous translation found for " + jarName + ", translating everything");
+            return null;
+        }
+        if (file.getName().toLowerCase().endsWith(".jar")) {
+            return PreviousTranslation.fromJar(file, entryNames);
+        }
+        if (!previousLangFileEnabled) {
+            return null;
+        }
+        // Файл ru_ru.json применим, только если в JAR ровно один такой переведенный файл
+        String fileName = file.getName().toLowerCase();
+        int matches = 0;
+        for (String entryName : entryNames) {
+            if (PreviousTranslation.matchesStandalone(entryName, fileName)) {
+                matches++;
+            }
+        }
+        if (matches != 1) {
+            LOGGER.info("Previous translation " + file + " matches " + matches + " language files in " + jarName
+                + ", translating everything");
+            return null;
+        }
+        return PreviousTranslation.fromLangFile(file);
+    }
+
+    private boolean isPreviousLangFile() {
+        return previousTranslation != null && previousTranslation.isFile()
+            && !previousTranslation.getName().toLowerCase().endsWith(".jar");
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for translation");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private String translatedFileName(String entryName, Language targetLanguage) {
+        return entryName.toLowerCase().replace("en_us", targetLanguage.getMinecraftLocale());
+    }
+
+    private boolean isLanguageFile(String fileName) {
+        String lowerFileName = fileName.toLowerCase();
+        return lowerFileName.endsWith("en_us.lang") || lowerFileName.endsWith("en_us.json");
+    }
+
+    // Файл читается потоком один раз, переводы на все целевые языки идут одновременно
+    private Map<Language, DeflatedEntry> translateLangFile(InputStream is, String entryName, List<Language> targetLanguages,
+                                                  PreviousTranslation previous, TemplateSlots.Usage templates,
+                                                  TranslationJournal journal, ProgressTracker progress) throws IOException {
+        LOGGER.info("Starting language file translation");
+
+        // Определяем формат файла по первому значимому символу
+        LangFileInput input = LangFileInput.open(is);
+        LOGGER.info("File format detected: " + (input.json ? "JSON" : "LANG"));
+        // Переводы сжимаются по мере записи; при ошибке их память и временные файлы освобождаются
+        Map<Language, DeflatedEntry> outputs = new LinkedHashMap<>();
+        List<FileTranslation> files = new ArrayList<>();
+        try {
+            if (input.json) {
+                translateJsonLangFile(input.reader, entryName, targetLanguages, previous, templates, journal, progress,
+                    outputs, files);
+            } else {
+                translateLegacyLangFile(input.reader, entryName, targetLanguages, previous, templates, journal, progress,
+                    outputs, files);
+            }
+            return outputs;
+        } catch (IOException | RuntimeException | Error e) {
+            release(outputs);
+            throw e;
+        } finally {
+            for (FileTranslation file : files) {
+                file.releaseBuffers();
+            }
+        }
+    }
+
+    // JSON разбирается и записывается через JsonReader/JsonWriter без промежуточного JsonObject.
+    // Порядок ключей сохраняется; нестроковые значения (числа, вложенные объекты, массивы) копируются как есть.
+    private void translateJsonLangFile(Reader source, String entryName, List<Language> targetLanguages,
+                                       PreviousTranslation previous, TemplateSlots.Usage templates,
+                                       TranslationJournal journal,
+                                       ProgressTracker progress, Map<Language, DeflatedEntry> outputs,
+                                       List<FileTranslation> files) throws IOException {
+        List<JsonWriter> writers = new ArrayList<>();
+        for (Language targetLanguage : targetLanguages) {
+            DeflatedEntry output = new DeflatedEntry(outputBudget, metrics);
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.beginObject();
+            outputs.put(targetLanguage, output);
+            writers.add(writer);
+            files.add(new FileTranslation(targetLanguage, entryName, previous, templates, journal, files, line -> {
+                try {
+                    writer.name(line.key);
+                    if (line.element != null) {
+                        gson.toJson(line.element, writer);
+                    } else {
+                        writer.value(line.getTranslatedValue());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                progress.advance();
+            }));
+        }
+
+        int totalEntries = 0;
+        boolean traceEntries = LOGGER.isLoggable(Level.FINE);
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext() && !stopRequested) {
+                String key = reader.nextName();
+                totalEntries++;
+                if (reader.peek() == JsonToken.STRING) {
+                    String value = reader.nextString();
+                    if (traceEntries) {
+                        LOGGER.fine("Submitting JSON entry: " + key);
+                    }
+                    for (FileTranslation file : files) {
+                        file.submit(key, value);
+                    }
+                } else {
+                    JsonElement value = JsonParser.parseReader(reader);
+                    if (traceEntries) {
+                        LOGGER.fine("Copying non-string JSON entry: " + key);
+                    }
+                    for (FileTranslation file : files) {
+                        file.keep(key, value);
+                    }
+                }
+            }
+            if (!stopRequested) {
+                reader.endObject();
+            }
+        } catch (MalformedJsonException | JsonParseException | IllegalStateException e) {
+            LOGGER.severe("Error parsing JSON language file: " + e.getMessage());
+            throw new IOException("Invalid JSON format in language file", e);
+        }
+        for (FileTranslation file : files) {
+            file.scheduleRetries();
+        }
+        for (FileTranslation file : files) {
+            file.finish();
+        }
+
+        if (stopRequested) {
+            throw new IOException("Translation stopped by user");
+        }
+
+        LOGGER.info("Found " + totalEntries + " entries in JSON file");
+        for (JsonWriter writer : writers) {
+            writer.endObject();
+            writer.close();
+        }
+    }
+
+    private void translateLegacyLangFile(Reader source, String entryName, List<Language> targetLanguages,
+                                         PreviousTranslation previous, TemplateSlots.Usage templates,
+                                         TranslationJournal journal,
+                                         ProgressTracker progress, Map<Language, DeflatedEntry> outputs,
+                                         List<FileTranslation> files) throws IOException {
+        // Обрабатываем .lang формат построчно
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        // Уровень проверяется один раз: на отключенном FINE строки сообщений не собираются
+        boolean traceLines = LOGGER.isLoggable(Level.FINE);
+
+        List<Writer> writers = new ArrayList<>();
+        for (Language targetLanguage : targetLanguages) {
+            DeflatedEntry output = new DeflatedEntry(outputBudget, metrics);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            outputs.put(targetLanguage, output);
+            writers.add(writer);
+            files.add(new FileTranslation(targetLanguage, entryName, previous, templates, journal, files, pendingLine -> {
+                try {
+                    if (pendingLine.key == null) {
+                        writer.append(pendingLine.originalValue).append("\n");
+                    } else {
+                        writer.append(pendingLine.key).append("=").append(pendingLine.getTranslatedValue()).append("\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                progress.advance();
+            }));
+        }
+
+        while ((line = reader.readLine()) != null && !stopRequested) {
+            lineNumber++;
+            if (traceLines) {
+                LOGGER.fine("Processing line " + lineNumber + ": " + line);
+            }
+
+            if (line.trim().isEmpty() || !line.contains("=")) {
+                if (traceLines) {
+                    LOGGER.fine("Skipping line " + lineNumber + " (empty or no translation needed)");
+                }
+                for (FileTranslation file : files) {
+                    file.keep(line);
+                }
+                continue;
+            }
+
+            String[] parts = line.split("=", 2);
+            if (parts.length != 2) {
+                if (traceLines) {
+                    LOGGER.fine("Skipping malformed line " + lineNumber);
+                }
+                for (FileTranslation file : files) {
+                    file.keep(line);
+                }
+                continue;
+            }
+
+            for (FileTranslation file : files) {
+                file.submit(parts[0], parts[1]);
+            }
+        }
+        for (FileTranslation file : files) {
+            file.scheduleRetries();
+        }
+        for (FileTranslation file : files) {
+            file.finish();
+        }
+
+        if (stopRequested) {
+            throw new IOException("Translation stopped by user");
+        }
+
+        LOGGER.info("Finished translating language file, processed " + lineNumber + " lines");
+        for (Writer writer : writers) {
+            writer.close();
+        }
+    }
+
+    // Состояние перевода одного языкового файла на один язык: одинаковые строки (без цветовых кодов)
+    // переводятся один раз, результат раздается всем ключам с этим текстом.
+    // Готовые строки отдаются в sink строго в исходном порядке.
+    // Если есть предыдущий перевод, неизмененные ключи берутся из него без запросов.
+    // Ключи из журнала прерванного запуска тоже не переводятся заново, новые переводы дописываются в журнал.
+    // Очередь строк и таблица одинаковых строк занимают место в lineBudget: когда его нет, разбор файла
+    // ждет записи своих строк, а не читает дальше, поэтому память не растет с размером файла.
+    private final class FileTranslation {
+        final Language targetLanguage;
+        final String entryName;
+        final TranslationJournal journal;
+        final TranslationBatcher batcher;
+        final Map<String, CompletableFuture<String>> uniqueTexts = new HashMap<>();
+        final Deque<PendingLine> pending = new ArrayDeque<>();
+        // Повторы строк, не переведенных после всех попыток
+        final Map<String, CompletableFuture<String>> retries = new LinkedHashMap<>();
+        final Consumer<PendingLine> sink;
+        final Map<String, String> previousSource;
+        final Map<String, String> previousTarget;
+        final Set<String> seenKeys = new HashSet<>();
+        final PlaceholderTokenizer tokenizer = new PlaceholderTokenizer();
+        int totalStrings;
+        int added;
+        int changed;
+        int reused;
+        int resumed;
+        int skipped;
+        int glossaryTerms;
+        // Тексты, перевод которых взят из общего словаря сборки
+        int sharedTexts;
+        // Уникальные тексты с начала файла: готовые записи uniqueTexts удаляются при нехватке памяти
+        int uniqueCount;
+        long pendingBytes;
+        long uniqueTextBytes;
+        final Glossary glossary;
+        final Map<String, CompletableFuture<String>> sharedTranslations;
+        final TemplateSlots.Usage templates;
+        // Переводы того же файла на другие языки; их очереди заполняет и освобождает тот же поток
+        final List<FileTranslation> files;
+
+        FileTranslation(Language targetLanguage, String entryName, PreviousTranslation previous,
+                        TemplateSlots.Usage templates, TranslationJournal journal, List<FileTranslation> files,
+                        Consumer<PendingLine> sink) {
+            this.targetLanguage = targetLanguage;
+            this.files = files;
+            this.templates = templates;
+            this.entryName = entryName;
+            this.journal = journal;
+            Consumer<PendingLine> write = journal != null ? line -> {
+                checkpoint(line);
+                sink.accept(line);
+            } : sink;
+            this.sink = line -> {
+                write.accept(line);
+                pendingBytes -= line.bufferedBytes;
+                lineBudget.release(line.bufferedBytes);
+            };
+            this.previousSource = previous != null ? previous.source(entryName) : null;
+            this.previousTarget = previous != null ? previous.translation(translatedFileName(entryName, targetLanguage)) : null;
+            this.glossary = glossary(targetLanguage);
+            SharedDictionary dictionary = sharedDictionary;
+            this.sharedTranslations = dictionary != null ? dictionary.translations(targetLanguage) : null;
+            this.batcher = new TranslationBatcher(executor, batchCharLimit,
+                texts -> translateBatch(texts, targetLanguage),
+                text -> translateText(text, targetLanguage));
+        }
+
+        void keep(String line) {
+            long bytes = reserve(stringBytes(line));
+            enqueue(PendingLine.untranslated(line), bytes);
+        }
+
+        // Нестроковое значение JSON: копируется без перевода
+        void keep(String key, JsonElement value) {
+            if (previousTarget != null) {
+                seenKeys.add(key);
+            }
+            long bytes = reserve(stringBytes(key) + 256);
+            enqueue(PendingLine.verbatim(key, value), bytes);
+        }
+
+        void submit(String key, String value) {
+            // Ключ, исходное значение, текст для перевода и перевод
+            long bytes = reserve(stringBytes(key) + 3 * stringBytes(value));
+            enqueue(createPendingLine(key, value), bytes);
+        }
+
+        private void enqueue(PendingLine line, long bytes) {
+            line.bufferedBytes = bytes;
+            pendingBytes += bytes;
+            pending.add(line);
+            drainCompleted(pending, sink, false);
+        }
+
+        // Пока места нет: записываются готовые строки, забываются готовые уникальные тексты,
+        // затем ожидается перевод первой строки очереди. Место может занимать очередь другого языка
+        // этого файла, а освободить ее может только этот же поток, поэтому сначала продвигаются все
+        // очереди файла. Ожидание только при пустых очередях: тогда место держат другие файлы
+        private long reserve(long bytes) {
+            while (!lineBudget.tryAcquire(bytes)) {
+                if (stopRequested) {
+                    lineBudget.forceAcquire(bytes);
+                    break;
+                }
+                if (makeRoom() || makeRoomInOtherLanguages()) {
+                    continue;
+                }
+                try {
+                    lineBudget.awaitRelease(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    lineBudget.forceAcquire(bytes);
+                    break;
+                }
+            }
+            return bytes;
+        }
+
+        // false, если очередь пуста и освобождать нечего
+        private boolean makeRoom() {
+            int queued = pending.size();
+            drainCompleted(pending, sink, false);
+            if (pending.size() < queued || pruneUniqueTexts()) {
+                return true;
+            }
+            if (!pending.isEmpty()) {
+                writeHead();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean makeRoomInOtherLanguages() {
+            for (FileTranslation file : files) {
+                if (file != this && file.makeRoom()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean pruneUniqueTexts() {
+            long released = 0;
+            Iterator<Map.Entry<String, CompletableFuture<String>>> iterator = uniqueTexts.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, CompletableFuture<String>> text = iterator.next();
+                if (text.getValue().isDone()) {
+                    released += uniqueTextBytes(text.getKey());
+                    iterator.remove();
+                }
+            }
+            uniqueTextBytes -= released;
+            lineBudget.release(released);
+            return released > 0;
+        }
+
+        // Первая строка записывается, не дожидаясь конца файла; непереведенная повторяется сразу
+        private void writeHead() {
+            PendingLine head = pending.peekFirst();
+            if (!head.translation.isDone()) {
+                batcher.flush();
+            }
+            if (head.isFailed()) {
+                String text = head.text;
+                CompletableFuture<String> failed = head.translation;
+                head.translation = stopRequested
+                    ? CompletableFuture.completedFuture(text)
+                    : executor.submit(text, () -> translateText(text, targetLanguage));
+                uniqueTexts.replace(text, failed, head.translation);
+                if (head.translation.join() != null) {
+                    stats.addFailures(1, 0);
+                } else {
+                    stats.addFailures(0, 1);
+                    deadLetters.add(targetLanguage + ": " + text);
+                }
+            }
+            sink.accept(pending.pollFirst());
+        }
+
+        // Без места в бюджете текст не запоминается: повтор получит перевод из памяти переводов или новым запросом
+        private void rememberUniqueText(String text, CompletableFuture<String> translation) {
+            long bytes = uniqueTextBytes(text);
+            if (lineBudget.tryAcquire(bytes) || (pruneUniqueTexts() && lineBudget.tryAcquire(bytes))) {
+                uniqueTexts.put(text, translation);
+                uniqueTextBytes += bytes;
+            }
+        }
+
+        void releaseBuffers() {
+            lineBudget.release(pendingBytes + uniqueTextBytes);
+            pendingBytes = 0;
+            uniqueTextBytes = 0;
+            pending.clear();
+            uniqueTexts.clear();
+        }
+
+        private PendingLine createPendingLine(String key, String value) {
+            String resumedValue = journal != null ? journal.completed(entryName, targetLanguage.getName(), key, value) : null;
+            if (resumedValue != null) {
+                if (previousTarget != null) {
+                    seenKeys.add(key);
+                }
+                resumed++;
+                return new PendingLine(key, value, null, CompletableFuture.completedFuture(resumedValue));
+            }
+            if (previousTarget != null) {
+                seenKeys.add(key);
+                String previousValue = previousTarget.get(key);
+                String previousSourceValue = previousSource != null ? previousSource.get(key) : null;
+                // Без старого исходного файла сравнить нечего: ключ считается неизмененным
+                if (previousValue != null && (previousSource == null || value.equals(previousSourceValue))) {
+                    reused++;
+                    return new PendingLine(key, value, null, CompletableFuture.completedFuture(previousValue));
+                }
+                if (previousSourceValue != null) {
+                    changed++;
+                } else {
+                    added++;
+                }
+            }
+
+            // Цветовые коды, плейсхолдеры и переводы строк не отправляются на перевод
+            PlaceholderTokenizer.Template template = prepare(tokenizer, glossary, key, value);
+            if (template == null) {
+                skipped++;
+                return new PendingLine(key, value, null, CompletableFuture.completedFuture(value));
+            }
+            String textToTranslate = template.text;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Key: " + key + ", text to translate: " + textToTranslate);
+            }
+            glossaryTerms += template.termCount();
+            // Значение целиком из терминов глоссария: перевод уже известен
+            if (!needsRequest(template)) {
+                skipped++;
+                PendingLine line = new PendingLine(key, value, template, CompletableFuture.completedFuture(textToTranslate));
+                line.checkpoint = true;
+                return line;
+            }
+            totalStrings++;
+            CompletableFuture<String> translation = uniqueTexts.get(textToTranslate);
+            if (translation == null) {
+                translation = sharedTranslations != null ? sharedTranslations.get(textToTranslate) : null;
+                if (translation != null) {
+                    sharedTexts++;
+                } else {
+                    translation = requestTranslation(textToTranslate, targetLanguage, templates, batcher);
+                }
+                uniqueCount++;
+                rememberUniqueText(textToTranslate, translation);
+            }
+            PendingLine line = new PendingLine(key, value, template, translation);
+            line.checkpoint = true;
+            return line;
+        }
+
+        // После остановки перевод возвращает исходный текст, такие строки в журнал не попадают
+        private void checkpoint(PendingLine line) {
+            if (line.checkpoint && !stopRequested && !line.isFailed()) {
+                try {
+                    journal.record(entryName, targetLanguage.getName(), line.key, line.originalValue, line.getTranslatedValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        // Строки, не переведенные после всех повторов, остаются в очереди и пробуются еще раз,
+        // когда остальной файл уже переведен и у сервиса было время восстановиться. Пауза - таймер
+        // исполнителя, поток ее не ждет; повторы всех языков файла назначаются до их finish()
+        void scheduleRetries() {
+            batcher.flush();
+            // Пауза длиннее последней задержки между повторами
+            long delay = retryDelayMillis(maxRetries + 1, null);
+            for (PendingLine line : pending) {
+                if (line.isFailed() && !retries.containsKey(line.text)) {
+                    String text = line.text;
+                    CompletableFuture<String> retry = new CompletableFuture<>();
+                    executor.schedule(delay, () -> translateText(text, targetLanguage).thenAccept(retry::complete));
+                    retries.put(text, retry);
+                }
+            }
+            if (retries.isEmpty()) {
+                return;
+            }
+            LOGGER.info("Retrying " + retries.size() + " failed strings for " + targetLanguage);
+            for (PendingLine line : pending) {
+                if (line.isFailed()) {
+                    line.translation = retries.get(line.text);
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            countRetries();
+            drainCompleted(pending, sink, true);
+            // Тексты из общего словаря учтены в нем самом
+            int unique = uniqueCount - sharedTexts;
+            stats.addFile(totalStrings, unique);
+            metrics.addStringsProcessed(totalStrings + reused + resumed + skipped);
+            stats.addSkipped(skipped);
+            stats.addGlossaryTerms(glossaryTerms);
+            if (resumed > 0) {
+                stats.addResumed(resumed);
+                LOGGER.info(String.format("Resumed %d keys of %s for %s from the translation journal",
+                    resumed, entryName, targetLanguage));
+            }
+            LOGGER.info(String.format("Deduplicated %d strings to %d unique (%d requests saved) for %s",
+                totalStrings, unique, totalStrings - unique, targetLanguage));
+            if (previousTarget != null) {
+                int removed = 0;
+                for (String key : (previousSource != null ? previousSource : previousTarget).keySet()) {
+                    if (!seenKeys.contains(key)) {
+                        removed++;
+                    }
+                }
+                stats.addIncremental(added, changed, removed, reused);
+                LOGGER.info(String.format("Incremental translation for %s: %d added, %d changed, %d removed, %d reused",
+                    targetLanguage, added, changed, removed, reused));
+            }
+        }
+
+        private void countRetries() {
+            if (retries.isEmpty()) {
+                return;
+            }
+            int recovered = 0;
+            for (Map.Entry<String, CompletableFuture<String>> retry : retries.entrySet()) {
+                if (retry.getValue().join() != null) {
+                    recovered++;
+                } else {
+                    deadLetters.add(targetLanguage + ": " + retry.getKey());
+                }
+            }
+            stats.addFailures(recovered, retries.size() - recovered);
+        }
+    }
+
+    // Оценка памяти строки в очереди: символы UTF-16 и заголовок объекта
+    private static long stringBytes(String value) {
+        return 2L * value.length() + 48;
+    }
+
+    private static long uniqueTextBytes(String text) {
+        // Ключ и future с переводом в HashMap
+        return 2 * stringBytes(text) + 96;
+    }
+
+    // Отдаем результаты строго в порядке ключей: ждем только голову очереди.
+    // Непереведенная строка задерживает очередь до повторной попытки в finish().
+    private void drainCompleted(Deque<PendingLine> pending, Consumer<PendingLine> sink, boolean waitAll) {
+        while (!pending.isEmpty() && (waitAll || (pending.peekFirst().translation.isDone() && !pending.peekFirst().isFailed()))) {
+            sink.accept(pending.pollFirst());
+        }
+    }
+
+    private static final class PendingLine {
+        final String key;
+        final String originalValue;
+        // Разбор значения на защищенные участки; null, если перевод уже готов целиком
+        final PlaceholderTokenizer.Template template;
+        // Текст, отправленный на перевод
+        final String text;
+        // Результат null означает, что перевести не удалось; заменяется при повторной попытке
+        CompletableFuture<String> translation;
+        // Записывается в журнал, когда строка готова
+        boolean checkpoint;
+        // Место строки в lineBudget
+        long bufferedBytes;
+        final JsonElement element;
+
+        PendingLine(String key, String originalValue, PlaceholderTokenizer.Template template,
+                    CompletableFuture<String> translation) {
+            this(key, originalValue, template, translation, null);
+        }
+
+        private PendingLine(String key, String originalValue, PlaceholderTokenizer.Template template,
+                            CompletableFuture<String> translation, JsonElement element) {
+            this.key = key;
+            this.originalValue = originalValue;
+            this.template = template;
+            this.text = template != null ? template.text : null;
+            this.translation = translation;
+            this.element = element;
+        }
+
+        static PendingLine untranslated(String line) {
+            return new PendingLine(null, line, null, CompletableFuture.completedFuture(line));
+        }
+
+        static PendingLine verbatim(String key, JsonElement element) {
+            return new PendingLine(key, null, null, CompletableFuture.completedFuture(null), element);
+        }
+
+        // Ждет завершения перевода
+        boolean isFailed() {
+            return element == null && translation.join() == null;
+        }
+
+        // Без перевода, или если сервис потерял маркер плейсхолдера, остается исходное значение
+        String getTranslatedValue() {
+            String translatedText = translation.join();
+            if (translatedText == null) {
+                return originalValue;
+            }
+            if (template == null) {
+                return translatedText;
+            }
+            String restored = template.restore(translatedText);
+            if (restored == null) {
+                LOGGER.fine(() -> "Placeholders were lost in translation of " + key + ", keeping the source value");
+                return originalValue;
+            }
+            return restored;
+        }
+    }
+
+    // Перевод текста, которого еще нет среди переведенных строк файла: из памяти переводов,
+    // через шаблон, общий для нескольких текстов (templates), или запросом в пакете batcher.
+    // Вызывается из потока, владеющего batcher
+    private CompletableFuture<String> requestTranslation(String text, Language targetLanguage,
+                                                         TemplateSlots.Usage templates, TranslationBatcher batcher) {
+        String remembered = recall(text, targetLanguage);
+        if (remembered != null) {
+            return CompletableFuture.completedFuture(remembered);
+        }
+        TemplateSlots.Slotted slotted = templates != null ? templateSlots.abstractSlots(text) : null;
+        if (slotted == null || !templates.isShared(targetLanguage, slotted.text)) {
+            return batcher.add(text);
+        }
+
+        // Шаблон и материалы переводятся один раз за запуск, числа подставляются как есть
+        CompletableFuture<String> template = cachedTranslation(slotted.text, targetLanguage, batcher);
+        List<CompletableFuture<String>> parts = new ArrayList<>();
+        parts.add(template);
+        CompletableFuture<?>[] materials = new CompletableFuture<?>[slotted.slotCount()];
+        for (int slot = 0; slot < slotted.slotCount(); slot++) {
+            if (slotted.isMaterial(slot)) {
+                CompletableFuture<String> material = cachedTranslation(slotted.value(slot), targetLanguage, batcher);
+                materials[slot] = material;
+                parts.add(material);
+            }
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+            String[] materialTranslations = new String[materials.length];
+            for (int slot = 0; slot < materials.length; slot++) {
+                if (materials[slot] != null) {
+                    materialTranslations[slot] = (String) materials[slot].getNow(null);
+                }
+            }
+            return error == null ? slotted.fill(template.getNow(null), materialTranslations) : null;
+        }).thenCompose(filled -> {
+            if (filled != null) {
+                stats.addTemplated(1);
+                return CompletableFuture.completedFuture(filled);
+            }
+            // Перевод шаблона потерял или повторил маркер: значение переводится целиком
+            LOGGER.fine(() -> "Template " + slotted.text + " cannot be reused, translating " + text);
+            return translateText(text, targetLanguage);
+        });
+    }
+
+    private CompletableFuture<String> cachedTranslation(String text, Language targetLanguage, TranslationBatcher batcher) {
+        String cacheKey = targetLanguage.getCode() + '\n' + text;
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> cached = templateCache.size() < MAX_TEMPLATES
+            ? templateCache.putIfAbsent(cacheKey, created)
+            : null;
+        if (cached != null) {
+            return cached;
+        }
+        String remembered = recall(text, targetLanguage);
+        if (remembered != null) {
+            created.complete(remembered);
+        } else {
+            batcher.add(text).whenComplete((translatedText, error) -> created.complete(error == null ? translatedText : null));
+        }
+        return created;
+    }
+
+    // Результат null, если строку не удалось перевести даже после повторов
+    private CompletableFuture<String> translateText(String text, Language targetLanguage) {
+        if (text.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(text);
+        }
+        
+        if (stopRequested) {
+            return CompletableFuture.completedFuture(text);
+        }
+
+        String targetLangCode = targetLanguage.getCode();
+        return withRetries(() -> backend.isAsync()
+                ? backend.translateAsync(text, targetLangCode)
+                : executor.supplyBlocking(() -> backend.translate(text, targetLangCode)))
+            .handle((translatedText, error) -> {
+                if (error == null) {
+                    metrics.addStringsTranslated(1);
+                    remember(text, targetLanguage, translatedText);
+                    return translatedText;
+                }
+                if (stopRequested) {
+                    return text;
+                }
+                LOGGER.warning("Error translating text: " + text + "\nError: " + unwrap(error).getMessage());
+                return null;
+            });
+    }
+
+    private String recall(String text, Language targetLanguage) {
+        if (translationMemory == null) {
+            return null;
+        }
+        String translatedText = translationMemory.get(text, targetLanguage.getCode());
+        metrics.addCacheLookup(translatedText != null);
+        return translatedText;
+    }
+
+    private void remember(String text, Language targetLanguage, String translatedText) {
+        if (translationMemory != null) {
+            translationMemory.put(text, targetLanguage.getCode(), translatedText);
+        }
+    }
+
+    // Переводит несколько строк одним запросом.
+    // Если ответ не удалось разобрать, переводим по одной; если сервис так и не ответил,
+    // все строки пакета считаются непереведенными (null).
+    private CompletableFuture<List<String>> translateBatch(List<String> texts, Language targetLanguage) {
+        if (stopRequested) {
+            return CompletableFuture.completedFuture(texts);
+        }
+
+        String targetLangCode = targetLanguage.getCode();
+        return withRetries(() -> backend.isAsync()
+                ? backend.translateBatchAsync(texts, targetLangCode)
+                : executor.supplyBlocking(() -> backend.translateBatch(texts, targetLangCode)))
+            .handle((translatedTexts, error) -> {
+                if (error != null) {
+                    if (stopRequested) {
+                        return CompletableFuture.completedFuture(texts);
+                    }
+                    LOGGER.warning("Error translating batch of " + texts.size() + " strings\nError: "
+                        + unwrap(error).getMessage());
+                    return CompletableFuture.completedFuture(Collections.<String>nCopies(texts.size(), null));
+                }
+                if (translatedTexts != null && translatedTexts.size() == texts.size()) {
+                    metrics.addStringsTranslated(texts.size());
+                    for (int i = 0; i < translatedTexts.size(); i++) {
+                        remember(texts.get(i), targetLanguage, translatedTexts.get(i));
+                    }
+                    return CompletableFuture.completedFuture(translatedTexts);
+                }
+                LOGGER.fine(() -> "Batch of " + texts.size() + " strings was not translated, falling back to single requests");
+                return translateEach(texts, targetLanguage);
+            })
+            .thenCompose(Function.identity());
+    }
+
+    // Запросы по одной строке идут параллельно, каждый через ограничитель частоты
+    private CompletableFuture<List<String>> translateEach(List<String> texts, Language targetLanguage) {
+        List<CompletableFuture<String>> singles = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            singles.add(translateText(text, targetLanguage));
+        }
+        return CompletableFuture.allOf(singles.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<String> results = new ArrayList<>(singles.size());
+            for (CompletableFuture<String> single : singles) {
+                results.add(single.join());
+            }
+            return results;
+        });
+    }
+
+    private <T> CompletableFuture<T> withRetries(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, 0, null, result);
+        return result;
+    }
+
+    // Повторяет запрос после 429, 5xx и сетевых ошибок с экспоненциальной задержкой и случайным разбросом.
+    // Задержка - таймер исполнителя, поток на это время не занимается. Каждый ответ сообщается регулятору частоты.
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, int attempt, IOException lastError,
+                             CompletableFuture<T> result) {
+        if (attempt > 0) {
+            stats.addRetry();
+            metrics.addRetry();
+        }
+        long delay = attempt > 0 ? retryDelayMillis(attempt, lastError) : 0;
+        executor.schedule(delay, () -> {
+            if (stopRequested) {
+                result.completeExceptionally(new InterruptedIOException("Translation stopped by user"));
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<T> response;
+            try {
+                response = call.get();
+            } catch (RuntimeException e) {
+                response = new CompletableFuture<>();
+                response.completeExceptionally(e);
+            }
+            response.whenComplete((value, error) -> {
+                long latency = System.nanoTime() - start;
+                if (error == null) {
+                    metrics.addRequest(latency, false, false);
+                    rateController.onSuccess(latency);
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = unwrap(error);
+                // Отмененные при остановке запросы не считаются ошибками сервиса
+                if (stopRequested || cause instanceof InterruptedIOException || !(cause instanceof IOException)) {
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                IOException failure = (IOException) cause;
+                boolean retryable = true;
+                if (failure instanceof TranslationBackendException) {
+                    TranslationBackendException backendError = (TranslationBackendException) failure;
+                    metrics.addRequest(latency, true, backendError.isThrottled());
+                    if (backendError.isThrottled()) {
+                        rateController.onThrottled(backendError.getRetryAfterMillis());
+                    } else {
+                        rateController.onFailure();
+                    }
+                    retryable = backendError.isRetryable();
+                } else {
+                    metrics.addRequest(latency, true, false);
+                    rateController.onFailure();
+                }
+                LOGGER.fine(() -> "Translation request failed (attempt " + (attempt + 1) + "): " + failure.getMessage());
+                if (!retryable || attempt >= maxRetries) {
+                    result.completeExceptionally(failure);
+                } else {
+                    attempt(call, attempt + 1, failure, result);
+                }
+            });
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private long retryDelayMillis(int attempt, IOException lastError) {
+        long backoff = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempt - 1, 20));
+        // Разброс от половины до полной задержки, чтобы повторы разных запросов не совпадали
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        if (lastError instanceof TranslationBackendException) {
+            delay = Math.max(delay, ((TranslationBackendException) lastError).getRetryAfterMillis());
+        }
+        return delay;
     }
 }
@@ -0,0 +1,303 @@
+package com.modtranslator;
+
+/**
+ * Splits a language value into protected spans and translatable text in a single pass,
+ * without regular expressions. Protected spans are formatting codes ({@code §a}),
+ * printf placeholders ({@code %s}, {@code %1$d}, {@code %.1f}, {@code %%}), MessageFormat
+ * placeholders ({@code {0}}, {@code {1,number}}) and line breaks (a real one or a literal
+ * {@code \n}).
+ *
+ * <p>Protected spans at the start and the end of a value are cut off and never sent. Spans in
+ * the middle are replaced with markers {@code {0}}, {@code {1}}, ... that translation services
+ * keep in place, and are put back at the positions of the markers afterwards. Adjacent spans
+ * such as {@code §e%s§r} form one marker.
+ *
+ * <p>One tokenizer is reused for all values of a file and is not thread-safe; the returned
+ * {@link Template}s are immutable.
+ */
+final class PlaceholderTokenizer {
+    private static final int[] NO_RUNS = new int[0];
+    private static final String[] NO_TERMS = new String[0];
+    // Маркеры хранятся битовой маской в restore
+    static final int MAX_MARKERS = 64;
+
+    // Пары (начало, конец) защищенных участков текущего значения
+    private int[] runs = new int[16];
+    private int runCount;
+    private final StringBuilder masked = new StringBuilder();
+
+    Template tokenize(String value) {
+        int length = value.length();
+        runCount = 0;
+        for (int i = 0; i < length; ) {
+            int end = protectedEnd(value, i, length);
+            if (end > i) {
+                addRun(i, end);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (runCount == 0) {
+            return new Template(value, value, 0, length, NO_RUNS, NO_TERMS);
+        }
+
+        // Защищенные участки и пробелы по краям не отправляются на перевод
+        int run = 0;
+        int coreStart = 0;
+        while (coreStart < length) {
+            if (run < runCount && runs[2 * run] == coreStart) {
+                coreStart = runs[2 * run + 1];
+                run++;
+            } else if (Character.isWhitespace(value.charAt(coreStart))) {
+                coreStart++;
+            } else {
+                break;
+            }
+        }
+        int firstInterior = run;
+        run = runCount - 1;
+        int coreEnd = length;
+        while (coreEnd > coreStart) {
+            if (run >= firstInterior && runs[2 * run + 1] == coreEnd) {
+                coreEnd = runs[2 * run];
+                run--;
+            } else if (Character.isWhitespace(value.charAt(coreEnd - 1))) {
+                coreEnd--;
+            } else {
+                break;
+            }
+        }
+        int interiorCount = run - firstInterior + 1;
+        if (interiorCount <= 0) {
+            return new Template(value, value.substring(coreStart, coreEnd), coreStart, coreEnd, NO_RUNS, NO_TERMS);
+        }
+
+        int[] interior = new int[2 * interiorCount];
+        System.arraycopy(runs, 2 * firstInterior, interior, 0, interior.length);
+        masked.setLength(0);
+        int position = coreStart;
+        for (int i = 0; i < interiorCount; i++) {
+            masked.append(value, position, interior[2 * i]).append('{').append(i).append('}');
+            position = interior[2 * i + 1];
+        }
+        masked.append(value, position, coreEnd);
+        return new Template(value, masked.toString(), coreStart, coreEnd, interior, NO_TERMS);
+    }
+
+    private void addRun(int start, int end) {
+        if (runCount > 0 && runs[2 * runCount - 1] == start) {
+            runs[2 * runCount - 1] = end;
+            return;
+        }
+        if (2 * runCount + 2 > runs.length) {
+            int[] grown = new int[runs.length * 2];
+            System.arraycopy(runs, 0, grown, 0, runs.length);
+            runs = grown;
+        }
+        runs[2 * runCount] = start;
+        runs[2 * runCount + 1] = end;
+        runCount++;
+    }
+
+    // Конец защищенного участка, начинающегося в i, или i, если его там нет
+    static int protectedEnd(String value, int i, int length) {
+        char ch = value.charAt(i);
+        switch (ch) {
+            case '§':
+                return i + 1 < length ? i + 2 : i;
+            case '\n':
+            case '\r':
+                return i + 1;
+            case '\\':
+                return i + 1 < length && value.charAt(i + 1) == 'n' ? i + 2 : i;
+            case '%':
+                return printfEnd(value, i, length);
+            case '{':
+                return messageFormatEnd(value, i, length);
+            default:
+                return i;
+        }
+    }
+
+    // %[индекс$][флаги][ширина][.точность]преобразование; "50% off" не считается плейсхолдером
+    private static int printfEnd(String value, int i, int length) {
+        int j = i + 1;
+        if (j < length && value.charAt(j) == '%') {
+            return j + 1;
+        }
+        int digits = skipDigits(value, j, length);
+        if (digits > j && digits < length && value.charAt(digits) == '$') {
+            j = digits + 1;
+        }
+        while (j < length && "-#+0,(<".indexOf(value.charAt(j)) >= 0) {
+            j++;
+        }
+        j = skipDigits(value, j, length);
+        if (j + 1 < length && value.charAt(j) == '.' && isDigit(value.charAt(j + 1))) {
+            j = skipDigits(value, j + 1, length);
+        }
+        if (j >= length) {
+            return i;
+        }
+        char conversion = value.charAt(j);
+        if (conversion == 't' || conversion == 'T') {
+            return j + 1 < length && Character.isLetter(value.charAt(j + 1)) ? j + 2 : i;
+        }
+        return "bBhHsScCdoxXeEfgGaAn".indexOf(conversion) >= 0 ? j + 1 : i;
+    }
+
+    // {индекс} или {индекс,формат}
+    private static int messageFormatEnd(String value, int i, int length) {
+        int j = skipDigits(value, i + 1, length);
+        if (j == i + 1 || j >= length) {
+            return i;
+        }
+        if (value.charAt(j) == '}') {
+            return j + 1;
+        }
+        if (value.charAt(j) != ',') {
+            return i;
+        }
+        for (int k = j + 1; k < length; k++) {
+            char ch = value.charAt(k);
+            if (ch == '}') {
+                return k + 1;
+            }
+            if (ch == '{' || ch == '\n') {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static int skipDigits(String value, int i, int length) {
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * A tokenized value: {@link #text} is sent for translation, {@link #restore} rebuilds the
+     * full value around a translation of it. Markers after the protected spans stand for
+     * glossary terms and are replaced with their fixed translations.
+     */
+    static final class Template {
+        final String value;
+        // Текст для перевода: середина значения, внутренние участки заменены на {0}, {1}, ...
+        final String text;
+        private final int coreStart;
+        private final int coreEnd;
+        private final int[] interior;
+        // Переводы терминов глоссария для маркеров с номерами от interior.length / 2
+        private final String[] terms;
+
+        private Template(String value, String text, int coreStart, int coreEnd, int[] interior, String[] terms) {
+            this.value = value;
+            this.text = text;
+            this.coreStart = coreStart;
+            this.coreEnd = coreEnd;
+            this.interior = interior;
+            this.terms = terms;
+        }
+
+        int termCount() {
+            return terms.length;
+        }
+
+        int markerCount() {
+            return interior.length / 2 + terms.length;
+        }
+
+        // text, в котором термины уже заменены маркерами с номерами от markerCount()
+        Template withTerms(String maskedText, String[] addedTerms) {
+            String[] allTerms = new String[terms.length + addedTerms.length];
+            System.arraycopy(terms, 0, allTerms, 0, terms.length);
+            System.arraycopy(addedTerms, 0, allTerms, terms.length, addedTerms.length);
+            return new Template(value, maskedText, coreStart, coreEnd, interior, allTerms);
+        }
+
+        // Нечего переводить: только коды, плейсхолдеры и пробелы
+        boolean isBlank() {
+            return coreStart >= coreEnd || text.trim().isEmpty();
+        }
+
+        // Возвращает null, если сервис потерял или продублировал маркер
+        String restore(String translated) {
+            if (coreStart == 0 && coreEnd == value.length() && interior.length == 0 && terms.length == 0) {
+                return translated;
+            }
+            int spans = interior.length / 2;
+            int markers = spans + terms.length;
+            StringBuilder result = new StringBuilder(value.length() - (coreEnd - coreStart) + translated.length() + 16);
+            result.append(value, 0, coreStart);
+            if (markers == 0) {
+                result.append(translated);
+            } else {
+                long used = 0;
+                int restored = 0;
+                int length = translated.length();
+                for (int i = 0; i < length; ) {
+                    int end = markerEnd(translated, i, length);
+                    int index = end > i ? markerIndex(translated, i, end) : -1;
+                    if (index >= 0 && index < markers && index < MAX_MARKERS && (used & (1L << index)) == 0) {
+                        used |= 1L << index;
+                        restored++;
+                        if (index < spans) {
+                            result.append(value, interior[2 * index], interior[2 * index + 1]);
+                        } else {
+                            result.append(terms[index - spans]);
+                        }
+                        i = end;
+                    } else {
+                        result.append(translated.charAt(i));
+                        i++;
+                    }
+                }
+                if (restored != markers) {
+                    return null;
+                }
+            }
+            result.append(value, coreEnd, value.length());
+            return result.toString();
+        }
+
+        // Маркер {n}; сервисы иногда добавляют пробелы: { 0 }
+        static int markerEnd(String text, int i, int length) {
+            if (text.charAt(i) != '{') {
+                return i;
+            }
+            int j = i + 1;
+            while (j < length && text.charAt(j) == ' ') {
+                j++;
+            }
+            int digits = skipDigits(text, j, length);
+            if (digits == j) {
+                return i;
+            }
+            while (digits < length && text.charAt(digits) == ' ') {
+                digits++;
+            }
+            return digits < length && text.charAt(digits) == '}' ? digits + 1 : i;
+        }
+
+        static int markerIndex(String text, int start, int end) {
+            int index = 0;
+            for (int i = start; i < end; i++) {
+                char ch = text.charAt(i);
+                if (isDigit(ch)) {
+                    index = index * 10 + (ch - '0');
+                    if (index > 1_000) {
+                        return -1;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.modtranslator;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Translations from an earlier run, used to retranslate only new or changed keys.
+ *
+ * <p>A previous {@code translated_*.jar} contains both the old {@code en_us} files and their
+ * translations, so values can be compared key by key. A standalone target-language file has no
+ * source to compare against: every key it contains is reused as is, but only for the translated
+ * file with the same name ({@code ru_ru.json} is never reused for German).
+ */
+class PreviousTranslation {
+    private static final Logger LOGGER = Logger.getLogger(PreviousTranslation.class.getName());
+
+    // Имя записи в нижнем регистре -> ключ -> значение
+    private final Map<String, Map<String, String>> files;
+    private final Map<String, String> standaloneFile;
+    private final String standaloneName;
+
+    private PreviousTranslation(Map<String, Map<String, String>> files, Map<String, String> standaloneFile, String standaloneName) {
+        this.files = files;
+        this.standaloneFile = standaloneFile;
+        this.standaloneName = standaloneName;
+    }
+
+    // Загружает из предыдущего JAR только нужные языковые файлы
+    static PreviousTranslation fromJar(File jar, Set<String> entryNames) throws IOException {
+        Map<String, Map<String, String>> files = new HashMap<>();
+        // Читаем в память, а не отображаем: предыдущий JAR может быть перезаписан результатом этого запуска
+        try (FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + jar);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // читаем до конца файла
+            }
+            buffer.flip();
+            ZipDirectory archive = ZipDirectory.read(buffer);
+            for (ZipDirectory.Entry entry : archive.entries()) {
+                String name = entry.name.toLowerCase();
+                if (entryNames.contains(name)) {
+                    try (InputStream is = archive.openStream(entry)) {
+                        files.put(name, parse(is));
+                    }
+                }
+            }
+        }
+        LOGGER.info("Loaded " + files.size() + " language files from previous translation " + jar);
+        return new PreviousTranslation(files, null, null);
+    }
+
+    static PreviousTranslation fromLangFile(File langFile) throws IOException {
+        try (InputStream is = new FileInputStream(langFile)) {
+            return new PreviousTranslation(Collections.emptyMap(), parse(is), langFile.getName().toLowerCase());
+        }
+    }
+
+    // Старые исходные значения; null, если сравнивать не с чем
+    Map<String, String> source(String sourceEntryName) {
+        return files.get(sourceEntryName.toLowerCase());
+    }
+
+    Map<String, String> translation(String translatedEntryName) {
+        if (standaloneFile != null) {
+            return matchesStandalone(translatedEntryName.toLowerCase(), standaloneName) ? standaloneFile : null;
+        }
+        return files.get(translatedEntryName.toLowerCase());
+    }
+
+    // Отдельный файл относится к записи с тем же именем, т.е. к той же локали и формату
+    static boolean matchesStandalone(String entryName, String fileName) {
+        return entryName.equals(fileName) || entryName.endsWith("/" + fileName);
+    }
+
+    static Map<String, String> parse(InputStream is) throws IOException {
+        LangFileInput input = LangFileInput.open(is);
+        Map<String, String> values = new LinkedHashMap<>();
+        if (input.json) {
+            try (JsonReader reader = new JsonReader(input.reader)) {
+                reader.setLenient(true);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING) {
+                        values.put(key, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } catch (MalformedJsonException | IllegalStateException e) {
+                throw new IOException("Invalid JSON format in previous language file", e);
+            }
+        } else {
+            BufferedReader reader = new BufferedReader(input.reader);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                // Те же правила, что и при переводе .lang: ключ — все до первого '='
+                if (separator >= 0 && !line.trim().isEmpty()) {
+                    values.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return values;
+    }
+}
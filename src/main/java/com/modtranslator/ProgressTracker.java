@@ -0,0 +1,38 @@
+package com.modtranslator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Aggregates progress of several language files translated at the same time. The total of a
+ * JAR is added once, when its language files are counted before translation starts; every
+ * update is also forwarded to the parent tracker, if any.
+ */
+class ProgressTracker {
+    private final AtomicInteger current = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ProgressTracker parent;
+    private final BiConsumer<Integer, Integer> sink;
+
+    ProgressTracker(ProgressTracker parent, BiConsumer<Integer, Integer> sink) {
+        this.parent = parent;
+        this.sink = sink;
+    }
+
+    void addTotal(int count) {
+        total.addAndGet(count);
+        if (parent != null) {
+            parent.addTotal(count);
+        }
+    }
+
+    void advance() {
+        int done = current.incrementAndGet();
+        if (sink != null) {
+            sink.accept(done, total.get());
+        }
+        if (parent != null) {
+            parent.advance();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.modtranslator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket: {@code permitsPerSecond} tokens are added every second, at most {@code burst}
+ * of them can be accumulated. A non-positive rate disables limiting. The rate can be changed
+ * while requests are running, and all permits can be held back for a while with {@link #pause}.
+ */
+public class RateLimiter {
+    private double permitsPerSecond;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    public RateLimiter(double permitsPerSecond, double burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+
+    public synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public synchronized void setPermitsPerSecond(double permitsPerSecond) {
+        refill(System.nanoTime());
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    // Ни один запрос не начнется раньше, чем через millis миллисекунд
+    public synchronized void pause(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+    }
+
+    // Резервируем токен сразу (баланс может уйти в минус) и возвращаем время ожидания
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        long pauseNanos = Math.max(0, pausedUntilNanos - now);
+        if (permitsPerSecond <= 0) {
+            return pauseNanos;
+        }
+        refill(now);
+        tokens -= 1;
+        if (tokens >= 0) {
+            return pauseNanos;
+        }
+        return pauseNanos + (long) (-tokens / permitsPerSecond * 1_000_000_000d);
+    }
+
+    private void refill(long now) {
+        if (permitsPerSecond > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerSecond / 1_000_000_000d);
+        }
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,207 @@
+package com.modtranslator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive without going through {@link java.util.zip.ZipOutputStream}. Entries of an
+ * existing archive are copied with their compressed bytes, CRC and sizes untouched; only entries
+ * added with {@link #putEntry} are deflated, or copied as they are when they were deflated while
+ * being produced ({@link DeflatedEntry}).
+ */
+final class RawZipWriter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(RawZipWriter.class.getName());
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+    private static final int UTF8_FLAG = 0x800;
+    private static final int VERSION_DEFLATE = 20;
+
+    private final WritableByteChannel out;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final Set<String> names = new HashSet<>();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+    private long offset;
+    private int entryCount;
+
+    RawZipWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    // Копирует запись как есть: сжатые данные не распаковываются
+    void copyRaw(ZipDirectory source, ZipDirectory.Entry entry) throws IOException {
+        if (!names.add(entry.name)) {
+            LOGGER.warning("Skipping duplicate entry: " + entry.name);
+            return;
+        }
+        ByteBuffer central = ByteBuffer.wrap(entry.centralRecord.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        int nameLength = central.getShort(28) & 0xffff;
+        // Размеры и CRC пишем в локальный заголовок, поэтому дескриптор данных не нужен
+        int flags = (central.getShort(8) & 0xffff) & ~DATA_DESCRIPTOR_FLAG;
+        ByteBuffer extra = source.localExtra(entry);
+
+        ByteBuffer local = ByteBuffer.allocate(ZipDirectory.LOCAL_HEADER_SIZE + nameLength + extra.remaining())
+            .order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(ZipDirectory.LOCAL_HEADER_SIGNATURE)
+            .putShort(central.getShort(6))
+            .putShort((short) flags)
+            .putShort(central.getShort(10))
+            .putShort(central.getShort(12))
+            .putShort(central.getShort(14))
+            .putInt(central.getInt(16))
+            .putInt(central.getInt(20))
+            .putInt(central.getInt(24))
+            .putShort((short) nameLength)
+            .putShort((short) extra.remaining())
+            .put(entry.centralRecord, ZipDirectory.CENTRAL_HEADER_SIZE, nameLength)
+            .put(extra);
+
+        central.putShort(8, (short) flags);
+        central.putInt(42, (int) checkOffset());
+        write(ByteBuffer.wrap(local.array()));
+        write(source.rawData(entry));
+        centralDirectory.write(central.array());
+        entryCount++;
+    }
+
+    void putEntry(String name, byte[] content) throws IOException {
+        checkName(name);
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        deflater.reset();
+        deflater.setInput(content, 0, content.length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(deflateBuffer);
+            compressed.write(deflateBuffer, 0, length);
+        }
+        byte[] data = compressed.toByteArray();
+        writeDeflated(name, crc.getValue(), data.length, content.length, () -> write(ByteBuffer.wrap(data)));
+    }
+
+    // Запись, сжатая заранее: данные копируются без повторного сжатия
+    void putEntry(String name, DeflatedEntry content) throws IOException {
+        checkName(name);
+        writeDeflated(name, content.crc(), content.compressedSize(), content.size(), () -> {
+            content.transferTo(out);
+            offset += content.compressedSize();
+        });
+    }
+
+    private void checkName(String name) throws ZipException {
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
+        }
+    }
+
+    private interface DataWriter {
+        void write() throws IOException;
+    }
+
+    private void writeDeflated(String name, long crc, long compressedSize, long size, DataWriter data) throws IOException {
+        if (compressedSize >= 0xffffffffL || size >= 0xffffffffL) {
+            throw new ZipException("Entry is too large for a non-ZIP64 archive: " + name);
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int dosTime = dosTime(LocalDateTime.now());
+        long localOffset = checkOffset();
+        ByteBuffer local = ByteBuffer.allocate(ZipDirectory.LOCAL_HEADER_SIZE + nameBytes.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(ZipDirectory.LOCAL_HEADER_SIGNATURE)
+            .putShort((short) VERSION_DEFLATE)
+            .putShort((short) UTF8_FLAG)
+            .putShort((short) Deflater.DEFLATED)
+            .putInt(dosTime)
+            .putInt((int) crc)
+            .putInt((int) compressedSize)
+            .putInt((int) size)
+            .putShort((short) nameBytes.length)
+            .putShort((short) 0)
+            .put(nameBytes);
+        write(ByteBuffer.wrap(local.array()));
+        data.write();
+
+        ByteBuffer central = ByteBuffer.allocate(ZipDirectory.CENTRAL_HEADER_SIZE + nameBytes.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        central.putInt(ZipDirectory.CENTRAL_HEADER_SIGNATURE)
+            .putShort((short) VERSION_DEFLATE)
+            .putShort((short) VERSION_DEFLATE)
+            .putShort((short) UTF8_FLAG)
+            .putShort((short) Deflater.DEFLATED)
+            .putInt(dosTime)
+            .putInt((int) crc)
+            .putInt((int) compressedSize)
+            .putInt((int) size)
+            .putShort((short) nameBytes.length)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putInt(0)
+            .putInt((int) localOffset)
+            .put(nameBytes);
+        centralDirectory.write(central.array());
+        entryCount++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (entryCount > 0xfffe) {
+                throw new ZipException("Too many entries for a non-ZIP64 archive: " + entryCount);
+            }
+            long centralOffset = checkOffset();
+            write(ByteBuffer.wrap(centralDirectory.toByteArray()));
+            ByteBuffer end = ByteBuffer.allocate(ZipDirectory.END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(ZipDirectory.END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) entryCount)
+                .putShort((short) entryCount)
+                .putInt(centralDirectory.size())
+                .putInt((int) centralOffset)
+                .putShort((short) 0);
+            write(ByteBuffer.wrap(end.array()));
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private long checkOffset() throws ZipException {
+        if (offset >= 0xffffffffL) {
+            throw new ZipException("Archive is too large for a non-ZIP64 archive");
+        }
+        return offset;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += out.write(buffer);
+        }
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+            | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
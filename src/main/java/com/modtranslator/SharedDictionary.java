@@ -0,0 +1,68 @@
+package com.modtranslator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modpack-wide table of the texts to translate, built in a pre-pass over all JARs of a batch.
+ * Every distinct text (after placeholder masking, per target language) is counted across the
+ * pack; {@link #freeze} then gives each one a single future translation, ordered from the most
+ * frequent text to the least frequent, which all JARs of the batch share.
+ */
+final class SharedDictionary {
+    // Язык -> текст -> число вхождений во всех JAR сборки
+    private final Map<Language, Map<String, Integer>> counts = new ConcurrentHashMap<>();
+    private final Map<Language, Map<String, CompletableFuture<String>>> translations = new HashMap<>();
+    private final Map<Language, Long> occurrences = new HashMap<>();
+
+    // Счетчики одного JAR добавляются целиком, чтобы потоки сканирования не конкурировали на каждой строке
+    void addCounts(Language targetLanguage, Map<String, Integer> jarCounts) {
+        Map<String, Integer> languageCounts = counts.computeIfAbsent(targetLanguage, k -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, Integer> count : jarCounts.entrySet()) {
+            languageCounts.merge(count.getKey(), count.getValue(), Integer::sum);
+        }
+    }
+
+    // Вызывается после сканирования, до перевода: дальше таблица только читается
+    void freeze() {
+        for (Map.Entry<Language, Map<String, Integer>> language : counts.entrySet()) {
+            List<Map.Entry<String, Integer>> byFrequency = new ArrayList<>(language.getValue().entrySet());
+            byFrequency.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+            Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+            long total = 0;
+            for (Map.Entry<String, Integer> text : byFrequency) {
+                futures.put(text.getKey(), new CompletableFuture<>());
+                total += text.getValue();
+            }
+            translations.put(language.getKey(), Collections.unmodifiableMap(futures));
+            occurrences.put(language.getKey(), total);
+        }
+        counts.clear();
+    }
+
+    // Уникальные тексты языка по убыванию частоты
+    Map<String, CompletableFuture<String>> translations(Language targetLanguage) {
+        Map<String, CompletableFuture<String>> futures = translations.get(targetLanguage);
+        return futures != null ? futures : Collections.emptyMap();
+    }
+
+    long occurrences(Language targetLanguage) {
+        return occurrences.getOrDefault(targetLanguage, 0L);
+    }
+
+    // Переводы, которых не будет: после остановки - исходный текст, после ошибки - null (не переведено)
+    void completeRemaining(boolean keepSource) {
+        for (Map<String, CompletableFuture<String>> futures : translations.values()) {
+            for (Map.Entry<String, CompletableFuture<String>> translation : futures.entrySet()) {
+                translation.getValue().complete(keepSource ? translation.getKey() : null);
+            }
+        }
+    }
+}
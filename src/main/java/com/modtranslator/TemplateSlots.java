@@ -0,0 +1,335 @@
+package com.modtranslator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns texts that differ only by a number or a material into one template: standalone
+ * numbers and known material names become slot markers, so {@code Tier 1 Battery} and
+ * {@code Tier 2 Battery} share {@code Tier {0} Battery}, and {@code Copper Gear} and
+ * {@code Tin Gear} share {@code {0} Gear}. The template is translated once; numbers go back
+ * as written, materials as their own translation. A material is only a slot right before an
+ * item noun ({@code Lead Ingot}), so ordinary words such as {@code Lead the way} stay in the text.
+ *
+ * <p>Slot markers are numbered after the markers the text already has, and a translated
+ * template is only filled when every marker comes back exactly once. A template is only used
+ * when {@link Usage} has seen it in at least two different texts.
+ */
+final class TemplateSlots {
+    private static final String MATERIALS = "template_materials.txt";
+    private static final String ITEMS = "template_items.txt";
+
+    private final Set<String> materials;
+    private final Set<String> items;
+
+    private TemplateSlots(Set<String> materials, Set<String> items) {
+        this.materials = materials;
+        this.items = items;
+    }
+
+    // Списки материалов и предметов читаются из ресурсов один раз
+    private static final class Defaults {
+        static final TemplateSlots INSTANCE = new TemplateSlots(loadWords(MATERIALS), loadWords(ITEMS));
+    }
+
+    static TemplateSlots defaults() {
+        return Defaults.INSTANCE;
+    }
+
+    private static Set<String> loadWords(String resource) {
+        Set<String> words = new HashSet<>();
+        try (InputStream is = TemplateSlots.class.getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IOException("Resource not found: " + resource);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    words.add(line.toLowerCase());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load " + resource, e);
+        }
+        return words;
+    }
+
+    /**
+     * Returns the template of {@code text} (a tokenized text with markers {@code {0}},
+     * {@code {1}}, ...), or {@code null} when it has no slots or nothing but slots.
+     */
+    Slotted abstractSlots(String text) {
+        int length = text.length();
+        int firstSlot = 0;
+        int markers = 0;
+        // Номера слотов идут после маркеров плейсхолдеров и терминов
+        for (int i = 0; i < length; ) {
+            int end = PlaceholderTokenizer.Template.markerEnd(text, i, length);
+            if (end > i) {
+                int index = PlaceholderTokenizer.Template.markerIndex(text, i, end);
+                if (index < 0 || index >= PlaceholderTokenizer.MAX_MARKERS) {
+                    return null;
+                }
+                firstSlot = Math.max(firstSlot, index + 1);
+                markers++;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+
+        StringBuilder template = null;
+        List<String> values = new ArrayList<>();
+        List<Boolean> translated = new ArrayList<>();
+        boolean letters = false;
+        int position = 0;
+        for (int i = 0; i < length; ) {
+            int end = PlaceholderTokenizer.Template.markerEnd(text, i, length);
+            if (end > i) {
+                i = end;
+                continue;
+            }
+            char ch = text.charAt(i);
+            boolean slot = false;
+            boolean material = false;
+            if (isDigit(ch) && isBoundary(text, i - 1)) {
+                end = numberEnd(text, i, length);
+                slot = isBoundary(text, end);
+            } else if (Character.isLetter(ch) && isBoundary(text, i - 1)) {
+                end = i;
+                while (end < length && Character.isLetter(text.charAt(end))) {
+                    end++;
+                }
+                material = materials.contains(text.substring(i, end).toLowerCase()) && isBoundary(text, end)
+                    && isItemAfter(text, end, length);
+                slot = material;
+                letters |= !material;
+            } else {
+                end = i + 1;
+            }
+            if (slot && firstSlot + values.size() < PlaceholderTokenizer.MAX_MARKERS) {
+                if (template == null) {
+                    template = new StringBuilder(length);
+                }
+                template.append(text, position, i).append('{').append(firstSlot + values.size()).append('}');
+                values.add(text.substring(i, end));
+                translated.add(material);
+                position = end;
+            }
+            i = end;
+        }
+        // Без слотов шаблон не нужен, без других слов переводить в шаблоне нечего
+        if (template == null || !letters) {
+            return null;
+        }
+        template.append(text, position, length);
+        boolean[] materialSlots = new boolean[values.size()];
+        for (int i = 0; i < materialSlots.length; i++) {
+            materialSlots[i] = translated.get(i);
+        }
+        return new Slotted(template.toString(), firstSlot, markers + values.size(),
+            values.toArray(new String[0]), materialSlots);
+    }
+
+    // Материал - слот только перед названием предмета: "Lead Ingot", "Gold Blocks", но не "Gold Rush"
+    private boolean isItemAfter(String text, int i, int length) {
+        if (i >= length || text.charAt(i) != ' ') {
+            return false;
+        }
+        int start = i + 1;
+        int end = start;
+        while (end < length && Character.isLetter(text.charAt(end))) {
+            end++;
+        }
+        if (end == start || !isBoundary(text, end)) {
+            return false;
+        }
+        String word = text.substring(start, end).toLowerCase();
+        return items.contains(word) || (word.endsWith("s") && items.contains(word.substring(0, word.length() - 1)));
+    }
+
+    // Число с дробной частью: 1, 32, 1.5
+    private static int numberEnd(String text, int i, int length) {
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < length && (text.charAt(i) == '.' || text.charAt(i) == ',') && isDigit(text.charAt(i + 1))) {
+            i++;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    // Слот - отдельное слово: "MK2" и "x4" остаются в тексте
+    private static boolean isBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * A text with its slots abstracted. {@link #text} is translated once for all texts of
+     * the same template; {@link #fill} puts the slot values into its translation.
+     */
+    static final class Slotted {
+        final String text;
+        private final int firstSlot;
+        // Все маркеры шаблона: плейсхолдеры, термины и слоты
+        private final int markers;
+        private final String[] values;
+        private final boolean[] materials;
+
+        private Slotted(String text, int firstSlot, int markers, String[] values, boolean[] materials) {
+            this.text = text;
+            this.firstSlot = firstSlot;
+            this.markers = markers;
+            this.values = values;
+            this.materials = materials;
+        }
+
+        int slotCount() {
+            return values.length;
+        }
+
+        // Материал переводится отдельным текстом; число подставляется как есть
+        boolean isMaterial(int slot) {
+            return materials[slot];
+        }
+
+        String value(int slot) {
+            return values[slot];
+        }
+
+        /**
+         * Replaces the slot markers in a translation of {@link #text} with the numbers and
+         * the translated materials ({@code materialTranslations} by slot, {@code null} for
+         * numbers). Other markers stay for the placeholder restore. Returns {@code null} when
+         * the translation lost or repeated a marker and cannot be reused.
+         */
+        String fill(String translatedTemplate, String[] materialTranslations) {
+            if (translatedTemplate == null) {
+                return null;
+            }
+            int length = translatedTemplate.length();
+            StringBuilder result = new StringBuilder(length + 16);
+            long used = 0;
+            int found = 0;
+            for (int i = 0; i < length; ) {
+                int end = PlaceholderTokenizer.Template.markerEnd(translatedTemplate, i, length);
+                int index = end > i ? PlaceholderTokenizer.Template.markerIndex(translatedTemplate, i, end) : -1;
+                if (index < 0 || index >= firstSlot + values.length) {
+                    result.append(translatedTemplate.charAt(i));
+                    i++;
+                    continue;
+                }
+                if ((used & (1L << index)) != 0) {
+                    return null;
+                }
+                used |= 1L << index;
+                found++;
+                int slot = index - firstSlot;
+                if (slot < 0) {
+                    result.append(translatedTemplate, i, end);
+                } else if (materials[slot]) {
+                    if (materialTranslations[slot] == null) {
+                        return null;
+                    }
+                    result.append(materialTranslations[slot]);
+                } else {
+                    result.append(values[slot]);
+                }
+                i = end;
+            }
+            return found == markers ? result.toString() : null;
+        }
+    }
+
+    /**
+     * Counts the different texts behind each template, per target language, before translation:
+     * over the language files of a JAR or over the shared dictionary of a modpack. Only templates
+     * shared by two or more texts are translated through slots. Templates with materials also cost
+     * a request per material, so they are used only when their texts outnumber those requests.
+     */
+    static final class Usage {
+        private final TemplateSlots slots;
+        // Язык -> шаблон -> хеши разных текстов и материалы в них; после freeze остаются только shared
+        private final Map<Language, Map<String, Count>> counts = new HashMap<>();
+        private final Map<Language, Set<String>> shared = new HashMap<>();
+
+        Usage(TemplateSlots slots) {
+            this.slots = slots;
+        }
+
+        void add(Language language, String text) {
+            Slotted slotted = slots.abstractSlots(text);
+            if (slotted == null) {
+                return;
+            }
+            Count count = counts.computeIfAbsent(language, k -> new HashMap<>())
+                .computeIfAbsent(slotted.text, k -> new Count());
+            // Одинаковые тексты сводит дедупликация; шаблон нужен только разным
+            count.texts.add(text.hashCode());
+            for (int slot = 0; slot < slotted.slotCount(); slot++) {
+                if (slotted.isMaterial(slot)) {
+                    count.materials.add(slotted.value(slot).toLowerCase());
+                }
+            }
+        }
+
+        // Вызывается после подсчета; дальше Usage только читается
+        Usage freeze() {
+            for (Map.Entry<Language, Map<String, Count>> language : counts.entrySet()) {
+                Set<String> languageShared = new HashSet<>();
+                Set<String> materialTemplates = new HashSet<>();
+                Set<String> materials = new HashSet<>();
+                int materialTexts = 0;
+                for (Map.Entry<String, Count> template : language.getValue().entrySet()) {
+                    Count count = template.getValue();
+                    if (count.texts.size() < 2) {
+                        continue;
+                    }
+                    if (count.materials.isEmpty()) {
+                        languageShared.add(template.getKey());
+                    } else {
+                        materialTemplates.add(template.getKey());
+                        materials.addAll(count.materials);
+                        materialTexts += count.texts.size();
+                    }
+                }
+                // Материалы переводятся один раз на все шаблоны: "Iron" общий для "Iron Ingot" и "Iron Gear"
+                if (materialTexts > materialTemplates.size() + materials.size()) {
+                    languageShared.addAll(materialTemplates);
+                }
+                shared.put(language.getKey(), languageShared);
+            }
+            counts.clear();
+            return this;
+        }
+
+        boolean isShared(Language language, String template) {
+            Set<String> languageShared = shared.get(language);
+            return languageShared != null && languageShared.contains(template);
+        }
+
+        private static final class Count {
+            final Set<Integer> texts = new HashSet<>();
+            final Set<String> materials = new HashSet<>();
+        }
+    }
+}
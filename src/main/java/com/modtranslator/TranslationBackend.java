@@ -0,0 +1,84 @@
+package com.modtranslator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A translation service. Implementations are listed in
+ * {@code META-INF/services/com.modtranslator.TranslationBackend}, discovered with
+ * {@link ServiceLoader} and selected by {@link #getName()}. Language codes are the
+ * Google-style codes used by {@link ModTranslator}, such as {@code ru} or {@code zh-CN};
+ * the source language is always English.
+ */
+public interface TranslationBackend extends Closeable {
+    String getName();
+
+    // Бросает IOException, если сервис не ответил или ответ не удалось разобрать
+    String translate(String text, String targetLangCode) throws IOException;
+
+    // Результаты в том же порядке, что и строки. null означает, что пакет перевести не удалось
+    // и строки нужно перевести по одной.
+    default List<String> translateBatch(List<String> texts, String targetLangCode) throws IOException {
+        List<String> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(translate(text, targetLangCode));
+        }
+        return results;
+    }
+
+    // true, если translateAsync и translateBatchAsync не блокируют вызывающий поток.
+    // Блокирующие backends ModTranslator вызывает в пуле рабочих потоков.
+    default boolean isAsync() {
+        return false;
+    }
+
+    // По умолчанию выполняется в вызывающем потоке; реализации с неблокирующим клиентом переопределяют
+    default CompletableFuture<String> translateAsync(String text, String targetLangCode) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            future.complete(translate(text, targetLangCode));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    default CompletableFuture<List<String>> translateBatchAsync(List<String> texts, String targetLangCode) {
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        try {
+            future.complete(translateBatch(texts, targetLangCode));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // Прерывает запросы, которые сейчас выполняются
+    default void cancelAll() {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    static TranslationBackend load(String name) {
+        for (TranslationBackend backend : ServiceLoader.load(TranslationBackend.class)) {
+            if (backend.getName().equals(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("Unknown translation backend: " + name);
+    }
+
+    static List<String> availableNames() {
+        List<String> names = new ArrayList<>();
+        for (TranslationBackend backend : ServiceLoader.load(TranslationBackend.class)) {
+            names.add(backend.getName());
+        }
+        return names;
+    }
+}
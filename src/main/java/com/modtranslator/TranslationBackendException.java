@@ -0,0 +1,61 @@
+package com.modtranslator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * An unsuccessful response from a translation service. Carries the HTTP-like status code
+ * and the delay requested by the service, so the caller can slow down and retry.
+ */
+public class TranslationBackendException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public TranslationBackendException(String message, int statusCode, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // -1, если сервис не указал задержку
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    // Сервис просит снизить частоту запросов
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    // Значение заголовка Retry-After: число секунд или HTTP-дата
+    public static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(trimmed) * 1000);
+        } catch (NumberFormatException e) {
+            // не число, пробуем дату
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
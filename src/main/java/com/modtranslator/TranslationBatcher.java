@@ -0,0 +1,71 @@
+package com.modtranslator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Packs short strings into one backend request. Strings are collected until adding the next
+ * one would exceed {@code charLimit}, then the whole batch is handed to the executor as a
+ * single request. Strings containing a line break cannot be sent inside a newline-delimited
+ * batch and always go on their own.
+ */
+public class TranslationBatcher {
+    private final TranslationExecutor executor;
+    private final int charLimit;
+    private final Function<List<String>, CompletableFuture<List<String>>> batchTask;
+    private final Function<String, CompletableFuture<String>> singleTask;
+
+    private List<String> texts = new ArrayList<>();
+    private List<CompletableFuture<String>> futures = new ArrayList<>();
+    private int chars;
+
+    public TranslationBatcher(TranslationExecutor executor, int charLimit,
+                              Function<List<String>, CompletableFuture<List<String>>> batchTask,
+                              Function<String, CompletableFuture<String>> singleTask) {
+        this.executor = executor;
+        this.charLimit = charLimit;
+        this.batchTask = batchTask;
+        this.singleTask = singleTask;
+    }
+
+    public CompletableFuture<String> add(String text) {
+        if (charLimit <= 0 || text.length() >= charLimit || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return executor.submit(text, () -> singleTask.apply(text));
+        }
+        if (chars + text.length() + 1 > charLimit) {
+            flush();
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        texts.add(text);
+        futures.add(future);
+        chars += text.length() + 1;
+        return future;
+    }
+
+    public void flush() {
+        if (texts.isEmpty()) {
+            return;
+        }
+        List<String> batchTexts = texts;
+        List<CompletableFuture<String>> batchFutures = futures;
+        texts = new ArrayList<>();
+        futures = new ArrayList<>();
+        chars = 0;
+
+        CompletableFuture<List<String>> batch = batchTexts.size() == 1
+            ? executor.submit(batchTexts.get(0), () -> singleTask.apply(batchTexts.get(0))).thenApply(Collections::singletonList)
+            : executor.submit(batchTexts, () -> batchTask.apply(batchTexts));
+        batch.whenComplete((results, error) -> {
+            for (int i = 0; i < batchFutures.size(); i++) {
+                if (error != null) {
+                    batchFutures.get(i).completeExceptionally(error);
+                } else {
+                    batchFutures.get(i).complete(results.get(i));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package com.modtranslator;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Schedules translation requests. The number of requests that are submitted but not yet
+ * finished is bounded by {@code maxInFlight}: {@link #submit} blocks the caller until a slot
+ * is free, so the reading side never runs far ahead of the backend.
+ *
+ * <p>No thread waits for a request: rate limiter waits and retry delays are timers on a single
+ * scheduler thread, a non-blocking backend completes requests on its own callback threads, and
+ * only blocking backends are called on the fixed pool of {@code parallelism} workers. A handful
+ * of threads therefore keeps up to {@code maxInFlight} requests in flight.
+ */
+public class TranslationExecutor implements AutoCloseable {
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore inFlight;
+    private final RateLimiter rateLimiter;
+    private final BooleanSupplier stopCondition;
+    // Отложенные запуски, которые еще не начались; при остановке выполняются сразу
+    private final Set<DelayedAction> delayed = ConcurrentHashMap.newKeySet();
+
+    public TranslationExecutor(int parallelism, int maxInFlight, RateLimiter rateLimiter, BooleanSupplier stopCondition) {
+        int poolId = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "translator-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.workers = Executors.newFixedThreadPool(Math.max(1, parallelism), threadFactory);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "translator-" + poolId + "-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.rateLimiter = rateLimiter;
+        this.stopCondition = stopCondition;
+    }
+
+    /**
+     * Starts {@code task} once a slot is free; the slot is held until the returned future
+     * completes. When a stop is requested the future completes with {@code valueIfStopped}
+     * instead of starting the task.
+     */
+    public <T> CompletableFuture<T> submit(T valueIfStopped, Supplier<CompletableFuture<T>> task) {
+        if (!acquireSlot()) {
+            return CompletableFuture.completedFuture(valueIfStopped);
+        }
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        future.whenComplete((result, error) -> inFlight.release());
+        return future;
+    }
+
+    /**
+     * Runs {@code action} after {@code delayMillis} and a rate limiter permit. Neither wait
+     * occupies a thread; without a wait the action runs in the calling thread.
+     */
+    public void schedule(long delayMillis, Runnable action) {
+        Runnable throttled = () -> {
+            long waitNanos = stopCondition.getAsBoolean() ? 0 : rateLimiter.reserve();
+            if (waitNanos > 0) {
+                runLater(action, waitNanos);
+            } else {
+                action.run();
+            }
+        };
+        if (delayMillis > 0) {
+            runLater(throttled, TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        } else {
+            throttled.run();
+        }
+    }
+
+    // Вызов блокирующего backend в пуле рабочих потоков
+    public <T> CompletableFuture<T> supplyBlocking(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            workers.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // Вызывается при остановке: ожидающие запуски выполняются сразу, видят флаг остановки
+    // и завершают свои futures, не дожидаясь таймера
+    public void runPendingNow() {
+        for (DelayedAction action : delayed) {
+            action.run();
+        }
+    }
+
+    private void runLater(Runnable action, long delayNanos) {
+        DelayedAction delayedAction = new DelayedAction(action);
+        delayed.add(delayedAction);
+        try {
+            scheduler.schedule(delayedAction, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            delayedAction.run();
+        }
+        if (stopCondition.getAsBoolean()) {
+            delayedAction.run();
+        }
+    }
+
+    private boolean acquireSlot() {
+        try {
+            while (!stopCondition.getAsBoolean()) {
+                if (inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        workers.shutdown();
+    }
+
+    // Выполняется один раз: по таймеру или досрочно при остановке
+    private final class DelayedAction implements Runnable {
+        private final Runnable action;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        DelayedAction(Runnable action) {
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                delayed.remove(this);
+                action.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.modtranslator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Checkpoint of a JAR translation in progress: every finished key is appended as
+ * {@code (language file, target language, key, source value, translated value)}. Records are
+ * buffered and flushed every {@value #FLUSH_RECORDS} records or once a second, so a crash loses
+ * at most the last batch; a torn record at the end of the file is ignored on load.
+ *
+ * <p>A restarted run loads the journal and reuses every key whose source value is unchanged.
+ * The journal is deleted once the output JAR has been written completely.
+ */
+final class TranslationJournal implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TranslationJournal.class.getName());
+    private static final int MAGIC = 0x4d544a31; // "MTJ1"
+    private static final int FLUSH_RECORDS = 256;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+
+    private final File file;
+    // Языковой файл + '\0' + язык -> ключ -> {исходное значение, перевод}
+    private final Map<String, Map<String, String[]>> completed;
+    private final DataOutputStream out;
+    private int unflushedRecords;
+    private long lastFlushNanos = System.nanoTime();
+    private boolean closed;
+
+    private TranslationJournal(File file, Map<String, Map<String, String[]>> completed, DataOutputStream out) {
+        this.file = file;
+        this.completed = completed;
+        this.out = out;
+    }
+
+    // Загружает записи прерванного запуска (если есть) и продолжает дописывать в тот же файл
+    static TranslationJournal open(File file) throws IOException {
+        Map<String, Map<String, String[]>> completed = new HashMap<>();
+        long validLength = file.isFile() ? load(file, completed) : -1;
+        boolean valid = validLength > 0;
+        if (file.isFile() && !valid) {
+            LOGGER.warning("Ignoring unreadable translation journal " + file);
+        }
+        if (valid) {
+            // Обрезаем оборванную последнюю запись, иначе новые записи после нее не прочитаются
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, valid), 64 * 1024));
+        if (!valid) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+        return new TranslationJournal(file, completed, out);
+    }
+
+    // Длина файла до конца последней целой записи; -1, если это не журнал
+    private static long load(File file, Map<String, Map<String, String[]>> completed) throws IOException {
+        int records = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return -1;
+            }
+            validLength = 4;
+            while (true) {
+                long[] recordLength = {0};
+                String entryName = readString(in, recordLength);
+                String targetLanguage = readString(in, recordLength);
+                String key = readString(in, recordLength);
+                String source = readString(in, recordLength);
+                String translation = readString(in, recordLength);
+                completed.computeIfAbsent(entryName + '\0' + targetLanguage, k -> new HashMap<>())
+                    .put(key, new String[] {source, translation});
+                validLength += recordLength[0];
+                records++;
+            }
+        } catch (EOFException e) {
+            // конец файла или оборванная последняя запись
+        }
+        if (validLength == 0) {
+            return -1;
+        }
+        LOGGER.info("Resuming from translation journal " + file + ": " + records + " translated keys");
+        return validLength;
+    }
+
+    boolean isEmpty() {
+        return completed.isEmpty();
+    }
+
+    // Переведенное значение ключа из прерванного запуска, если исходный текст не изменился
+    String completed(String entryName, String targetLanguage, String key, String source) {
+        Map<String, String[]> keys = completed.get(entryName + '\0' + targetLanguage);
+        String[] record = keys != null ? keys.get(key) : null;
+        return record != null && record[0].equals(source) ? record[1] : null;
+    }
+
+    synchronized void record(String entryName, String targetLanguage, String key, String source,
+                             String translation) throws IOException {
+        if (closed) {
+            return;
+        }
+        writeString(entryName);
+        writeString(targetLanguage);
+        writeString(key);
+        writeString(source);
+        writeString(translation);
+        long now = System.nanoTime();
+        if (++unflushedRecords >= FLUSH_RECORDS || now - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+            flush(now);
+        }
+    }
+
+    private void flush(long now) throws IOException {
+        out.flush();
+        unflushedRecords = 0;
+        lastFlushNanos = now;
+    }
+
+    // Длина в байтах + UTF-8: writeUTF ограничен 64 КБ
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long[] recordLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new EOFException("Corrupted journal record");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        recordLength[0] += 4 + length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    // Вызывается после успешной записи выходного JAR
+    void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            LOGGER.warning("Failed to delete translation journal " + file);
+        }
+    }
+}
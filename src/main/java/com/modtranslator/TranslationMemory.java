@@ -0,0 +1,460 @@
+package com.modtranslator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Persistent translation memory keyed by (source text, target language).
+ *
+ * <p>Translations are appended to {@code memory.log} as {@code [keyLength][valueLength][key][value]}
+ * records. {@code memory.idx} is an open-addressing hash table of (key hash, record offset) slots
+ * that is memory-mapped on open, so reopening does not rescan the log: only records written after
+ * the last indexed offset are read. A small LRU map in front of the disk tier serves repeated
+ * strings within a run. When the log grows past {@code maxLogBytes} the oldest records are dropped.
+ * A lock on {@code memory.lock} keeps a second process (or a second instance) from opening the
+ * same directory; {@link #open} fails while the lock is held.
+ */
+public class TranslationMemory implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(TranslationMemory.class.getName());
+
+    private static final int LOG_MAGIC = 0x4D544D31;
+    private static final int INDEX_MAGIC = 0x4D544931;
+    private static final int LOG_HEADER_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_SLOTS = 1024;
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final File logFile;
+    private final File indexFile;
+    private final File lockFile;
+    private final long maxLogBytes;
+    private final Map<String, String> frontCache;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private FileChannel log;
+    private long logLength;
+    private RandomAccessFile indexRaf;
+    private MappedByteBuffer index;
+    private int slotCount;
+    private int entryCount;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private TranslationMemory(File directory, long maxLogBytes, int frontCapacity) {
+        this.logFile = new File(directory, "memory.log");
+        this.indexFile = new File(directory, "memory.idx");
+        this.lockFile = new File(directory, "memory.lock");
+        this.maxLogBytes = maxLogBytes;
+        this.frontCache = new LinkedHashMap<String, String>(Math.max(16, frontCapacity), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > frontCapacity;
+            }
+        };
+    }
+
+    public static TranslationMemory open(File directory, long maxLogBytes, int frontCapacity) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create translation memory directory: " + directory);
+        }
+        TranslationMemory memory = new TranslationMemory(directory, maxLogBytes, frontCapacity);
+        memory.lock();
+        try {
+            memory.openFiles();
+        } catch (IOException | RuntimeException e) {
+            memory.close();
+            throw e;
+        }
+        return memory;
+    }
+
+    public synchronized String get(String text, String targetLangCode) {
+        String key = key(text, targetLangCode);
+        String cached = frontCache.get(key);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached;
+        }
+        try {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            long offset = findOffset(keyBytes, hash(keyBytes));
+            if (offset > 0) {
+                String value = readValue(offset);
+                frontCache.put(key, value);
+                diskHits.incrementAndGet();
+                return value;
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Translation memory read failed: " + e.getMessage());
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(String text, String targetLangCode, String translation) {
+        String key = key(text, targetLangCode);
+        if (translation.equals(frontCache.put(key, translation))) {
+            return;
+        }
+        try {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = translation.getBytes(StandardCharsets.UTF_8);
+            long offset = logLength;
+            byte[] record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length)
+                .putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes).array();
+            writeFully(log, ByteBuffer.wrap(record), offset);
+            logLength += record.length;
+            insert(hash(keyBytes), offset, keyBytes);
+            index.putLong(16, logLength);
+
+            if (maxLogBytes > 0 && logLength > maxLogBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Translation memory write failed: " + e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    public String getStats() {
+        return String.format("%d entries, %d hits (%d memory, %d disk), %d misses, %d evicted",
+            size(), getHits(), memoryHits.get(), diskHits.get(), misses.get(), evictions.get());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (index != null) {
+            index.force();
+            index = null;
+        }
+        if (indexRaf != null) {
+            indexRaf.close();
+            indexRaf = null;
+        }
+        if (log != null) {
+            log.force(false);
+            log.close();
+            log = null;
+        }
+        if (lockChannel != null) {
+            // Закрытие канала снимает блокировку
+            lockChannel.close();
+            lockChannel = null;
+            lock = null;
+        }
+    }
+
+    private static String key(String text, String targetLangCode) {
+        return targetLangCode + KEY_SEPARATOR + text;
+    }
+
+    // Без ожидания: занятая память не должна задерживать перевод
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("Translation memory is in use by another process: " + lockFile.getParentFile());
+        }
+    }
+
+    private void openFiles() throws IOException {
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logLength = log.size();
+        boolean freshLog = logLength < LOG_HEADER_SIZE || readInt(0) != LOG_MAGIC;
+        if (freshLog) {
+            log.truncate(0);
+            writeFully(log, ByteBuffer.wrap(ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).array()), 0);
+            logLength = LOG_HEADER_SIZE;
+        }
+
+        indexRaf = new RandomAccessFile(indexFile, "rw");
+        boolean validIndex = false;
+        if (!freshLog && indexRaf.length() >= INDEX_HEADER_SIZE) {
+            mapIndex(indexRaf.length());
+            int slots = index.getInt(4);
+            long indexedLength = index.getLong(16);
+            validIndex = index.getInt(0) == INDEX_MAGIC
+                && slots >= MIN_SLOTS && Integer.bitCount(slots) == 1
+                && indexRaf.length() >= INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE
+                && indexedLength >= LOG_HEADER_SIZE && indexedLength <= logLength;
+            if (validIndex) {
+                slotCount = slots;
+                entryCount = index.getInt(8);
+                // Дочитываем записи, добавленные после последнего обновления индекса
+                scanLog(indexedLength);
+            }
+        }
+        if (!validIndex) {
+            LOGGER.info("Rebuilding translation memory index");
+            resetIndex(MIN_SLOTS);
+            scanLog(LOG_HEADER_SIZE);
+        }
+    }
+
+    private void scanLog(long from) throws IOException {
+        long fileLength = log.size();
+        long offset = from;
+        try (FileInputStream fileIn = new FileInputStream(logFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 1 << 16))) {
+            fileIn.getChannel().position(from);
+            while (offset + RECORD_HEADER_SIZE <= fileLength) {
+                int keyLength = in.readInt();
+                int valueLength = in.readInt();
+                long end = offset + RECORD_HEADER_SIZE + (long) keyLength + valueLength;
+                if (keyLength <= 0 || valueLength < 0 || end > fileLength) {
+                    break;
+                }
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                skipFully(in, valueLength);
+                insert(hash(keyBytes), offset, keyBytes);
+                offset = end;
+            }
+        }
+        if (offset < fileLength) {
+            // Обрезаем недописанную запись (например, после аварийного завершения)
+            LOGGER.warning("Truncating damaged translation memory tail at offset " + offset);
+            log.truncate(offset);
+        }
+        logLength = offset;
+        index.putLong(16, logLength);
+    }
+
+    private long findOffset(byte[] keyBytes, long hash) throws IOException {
+        int mask = slotCount - 1;
+        for (int slot = (int) (hash ^ (hash >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = index.getLong(position);
+            if (slotHash == 0) {
+                return -1;
+            }
+            if (slotHash == hash) {
+                long offset = index.getLong(position + 8);
+                if (offset < logLength && keyEquals(offset, keyBytes)) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    private void insert(long hash, long offset, byte[] keyBytes) throws IOException {
+        if ((entryCount + 1) * 10L > slotCount * 7L) {
+            resize(slotCount * 2);
+        }
+        int mask = slotCount - 1;
+        for (int slot = (int) (hash ^ (hash >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = index.getLong(position);
+            if (slotHash == 0) {
+                index.putLong(position, hash);
+                index.putLong(position + 8, offset);
+                entryCount++;
+                index.putInt(8, entryCount);
+                return;
+            }
+            // Тот же ключ записан повторно: индекс указывает на самую свежую запись
+            if (slotHash == hash && keyBytes != null && keyEquals(index.getLong(position + 8), keyBytes)) {
+                index.putLong(position + 8, offset);
+                return;
+            }
+        }
+    }
+
+    private void resize(int newSlotCount) throws IOException {
+        long[] hashes = new long[entryCount];
+        long[] offsets = new long[entryCount];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = index.getLong(position);
+            if (slotHash != 0) {
+                hashes[count] = slotHash;
+                offsets[count] = index.getLong(position + 8);
+                count++;
+            }
+        }
+        resetIndex(newSlotCount);
+        for (int i = 0; i < count; i++) {
+            insert(hashes[i], offsets[i], null);
+        }
+    }
+
+    private void resetIndex(int newSlotCount) throws IOException {
+        long size = INDEX_HEADER_SIZE + (long) newSlotCount * SLOT_SIZE;
+        // Файл индекса только растет: на Windows нельзя укоротить файл с активным отображением
+        if (indexRaf.length() < size) {
+            indexRaf.setLength(size);
+        }
+        mapIndex(size);
+        for (int position = 0; position < size; position += 8) {
+            index.putLong(position, 0L);
+        }
+        slotCount = newSlotCount;
+        entryCount = 0;
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, slotCount);
+        index.putInt(8, 0);
+        index.putLong(16, LOG_HEADER_SIZE);
+    }
+
+    private void mapIndex(long size) throws IOException {
+        index = indexRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // Оставляем самые свежие записи, пока лог не уменьшится до 3/4 лимита
+    private void compact() throws IOException {
+        long[] offsets = new long[entryCount];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            if (index.getLong(position) != 0) {
+                offsets[count++] = index.getLong(position + 8);
+            }
+        }
+        Arrays.sort(offsets, 0, count);
+
+        long budget = maxLogBytes * 3 / 4;
+        int first = count;
+        long kept = 0;
+        while (first > 0) {
+            long size = recordSize(offsets[first - 1]);
+            if (kept + size > budget) {
+                break;
+            }
+            kept += size;
+            first--;
+        }
+
+        File tempFile = new File(logFile.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.wrap(ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).array());
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (int i = first; i < count; i++) {
+                long size = recordSize(offsets[i]);
+                long transferred = 0;
+                while (transferred < size) {
+                    transferred += log.transferTo(offsets[i] + transferred, size - transferred, out);
+                }
+            }
+        }
+        log.close();
+        Files.move(tempFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        evictions.addAndGet(first);
+        resetIndex(slotCount);
+        scanLog(LOG_HEADER_SIZE);
+        LOGGER.info("Compacted translation memory: evicted " + first + " entries, kept " + (count - first));
+    }
+
+    private long recordSize(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(offset, header);
+        return RECORD_HEADER_SIZE + (long) header.getInt(0) + header.getInt(4);
+    }
+
+    private boolean keyEquals(long offset, byte[] keyBytes) throws IOException {
+        if (readInt(offset) != keyBytes.length) {
+            return false;
+        }
+        ByteBuffer storedKey = ByteBuffer.allocate(keyBytes.length);
+        readFully(offset + RECORD_HEADER_SIZE, storedKey);
+        return Arrays.equals(storedKey.array(), keyBytes);
+    }
+
+    private String readValue(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(offset, header);
+        int keyLength = header.getInt(0);
+        ByteBuffer value = ByteBuffer.allocate(header.getInt(4));
+        readFully(offset + RECORD_HEADER_SIZE + keyLength, value);
+        return new String(value.array(), StandardCharsets.UTF_8);
+    }
+
+    // Читает до заполнения буфера, начиная с позиции position в логе
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        long filePosition = position;
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, filePosition);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of translation memory log");
+            }
+            filePosition += read;
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(position, buffer);
+        return buffer.getInt(0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    // FNV-1a с финальным перемешиванием; 0 зарезервирован под пустой слот
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,321 @@
+package com.modtranslator;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pipeline counters for a single run: JAR entries scanned and copied, strings processed,
+ * translation memory hits, backend requests with a latency histogram, retries, throughput and
+ * the peak of bytes buffered between the stages of language file translation.
+ * Counters are {@link LongAdder}s, so recording from many worker threads does not contend.
+ * Readable at any time through JMX or {@link ModTranslator.MetricsListener}, and written as
+ * a JSON report when the run ends.
+ */
+public class TranslationMetrics implements TranslationMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(TranslationMetrics.class.getName());
+    private static final String OBJECT_NAME = "com.modtranslator:type=TranslationMetrics";
+
+    private final LongAdder entriesScanned = new LongAdder();
+    private final LongAdder languageFiles = new LongAdder();
+    private final LongAdder bytesCopied = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder stringsProcessed = new LongAdder();
+    private final LongAdder stringsTranslated = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder throttledRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesSpilled = new LongAdder();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong peakBufferedBytes = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private volatile DoubleSupplier requestRate = () -> 0;
+
+    void addEntryScanned() {
+        entriesScanned.increment();
+    }
+
+    void addLanguageFile() {
+        languageFiles.increment();
+    }
+
+    void addBytesCopied(long bytes) {
+        bytesCopied.add(bytes);
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void addStringsProcessed(long strings) {
+        stringsProcessed.add(strings);
+    }
+
+    void addStringsTranslated(long strings) {
+        stringsTranslated.add(strings);
+    }
+
+    void addCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    // Каждый запрос к сервису, включая неудачные и повторные
+    void addRequest(long latencyNanos, boolean failed, boolean throttled) {
+        requestLatency.record(latencyNanos);
+        if (failed) {
+            failedRequests.increment();
+        }
+        if (throttled) {
+            throttledRequests.increment();
+        }
+    }
+
+    void addRetry() {
+        retries.increment();
+    }
+
+    // Изменение объема строк и переводов, которые ждут следующей стадии в памяти
+    void addBufferedBytes(long delta) {
+        long buffered = bufferedBytes.addAndGet(delta);
+        if (delta > 0) {
+            peakBufferedBytes.accumulateAndGet(buffered, Math::max);
+        }
+    }
+
+    void addBytesSpilled(long bytes) {
+        bytesSpilled.add(bytes);
+    }
+
+    void setRequestRate(DoubleSupplier requestRate) {
+        this.requestRate = requestRate;
+    }
+
+    void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    @Override
+    public long getEntriesScanned() {
+        return entriesScanned.sum();
+    }
+
+    @Override
+    public long getLanguageFiles() {
+        return languageFiles.sum();
+    }
+
+    @Override
+    public long getBytesCopied() {
+        return bytesCopied.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getStringsProcessed() {
+        return stringsProcessed.sum();
+    }
+
+    @Override
+    public long getStringsTranslated() {
+        return stringsTranslated.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getRequests() {
+        return requestLatency.getCount();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public long getThrottledRequests() {
+        return throttledRequests.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    @Override
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes.get();
+    }
+
+    @Override
+    public long getBytesSpilled() {
+        return bytesSpilled.sum();
+    }
+
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    @Override
+    public double getRequestLatencyMeanMillis() {
+        return requestLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getRequestLatencyP50Millis() {
+        return requestLatency.percentileMillis(50);
+    }
+
+    @Override
+    public double getRequestLatencyP95Millis() {
+        return requestLatency.percentileMillis(95);
+    }
+
+    @Override
+    public double getRequestLatencyP99Millis() {
+        return requestLatency.percentileMillis(99);
+    }
+
+    @Override
+    public double getRequestLatencyMaxMillis() {
+        return requestLatency.getMaxMillis();
+    }
+
+    @Override
+    public double getRequestRate() {
+        return requestRate.getAsDouble();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    @Override
+    public double getStringsPerSecond() {
+        return perSecond(getStringsProcessed());
+    }
+
+    @Override
+    public double getRequestsPerSecond() {
+        return perSecond(getRequests());
+    }
+
+    @Override
+    public double getBytesCopiedPerSecond() {
+        return perSecond(getBytesCopied());
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finishNanos != 0;
+    }
+
+    private double perSecond(long value) {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? value * 1000d / elapsed : 0;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("elapsedMillis", getElapsedMillis());
+        json.addProperty("finished", isFinished());
+        json.addProperty("entriesScanned", getEntriesScanned());
+        json.addProperty("languageFiles", getLanguageFiles());
+        json.addProperty("bytesCopied", getBytesCopied());
+        json.addProperty("bytesWritten", getBytesWritten());
+        json.addProperty("stringsProcessed", getStringsProcessed());
+        json.addProperty("stringsTranslated", getStringsTranslated());
+        json.addProperty("cacheHits", getCacheHits());
+        json.addProperty("cacheMisses", getCacheMisses());
+        json.addProperty("requests", getRequests());
+        json.addProperty("failedRequests", getFailedRequests());
+        json.addProperty("throttledRequests", getThrottledRequests());
+        json.addProperty("retries", getRetries());
+        json.addProperty("peakBufferedBytes", getPeakBufferedBytes());
+        json.addProperty("bytesSpilled", getBytesSpilled());
+        json.addProperty("requestRate", LatencyHistogram.round(getRequestRate()));
+        json.add("requestLatency", requestLatency.toJson());
+        JsonObject throughput = new JsonObject();
+        throughput.addProperty("stringsPerSecond", LatencyHistogram.round(getStringsPerSecond()));
+        throughput.addProperty("requestsPerSecond", LatencyHistogram.round(getRequestsPerSecond()));
+        throughput.addProperty("bytesCopiedPerSecond", Math.round(getBytesCopiedPerSecond()));
+        json.add("throughput", throughput);
+        return json;
+    }
+
+    public void writeReport(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(toJson(), writer);
+        }
+    }
+
+    // Регистрирует метрики в платформенном MBeanServer вместо метрик предыдущего запуска
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            synchronized (TranslationMetrics.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            }
+        } catch (JMException | SecurityException e) {
+            LOGGER.log(Level.FINE, "Failed to register translation metrics MBean", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries scanned, %d bytes copied, %d strings processed (%d translated, %d cache hits), "
+                + "%d requests (%d failed, %d throttled, %d retries), latency p50 %.0f ms / p99 %.0f ms, %.1f strings/s, "
+                + "peak %d KB buffered (%d KB spilled)",
+            getEntriesScanned(), getBytesCopied(), getStringsProcessed(), getStringsTranslated(), getCacheHits(),
+            getRequests(), getFailedRequests(), getThrottledRequests(), getRetries(),
+            getRequestLatencyP50Millis(), getRequestLatencyP99Millis(), getStringsPerSecond(),
+            getPeakBufferedBytes() / 1024, getBytesSpilled() / 1024);
+    }
+}
@@ -0,0 +1,59 @@
+package com.modtranslator;
+
+/**
+ * JMX view of {@link TranslationMetrics}, registered as
+ * {@code com.modtranslator:type=TranslationMetrics} for the current (or last) run.
+ */
+public interface TranslationMetricsMXBean {
+    long getEntriesScanned();
+
+    long getLanguageFiles();
+
+    long getBytesCopied();
+
+    long getBytesWritten();
+
+    long getStringsProcessed();
+
+    long getStringsTranslated();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getRequests();
+
+    long getFailedRequests();
+
+    long getThrottledRequests();
+
+    long getRetries();
+
+    long getBufferedBytes();
+
+    long getPeakBufferedBytes();
+
+    long getBytesSpilled();
+
+    double getRequestLatencyMeanMillis();
+
+    double getRequestLatencyP50Millis();
+
+    double getRequestLatencyP95Millis();
+
+    double getRequestLatencyP99Millis();
+
+    double getRequestLatencyMaxMillis();
+
+    double getRequestRate();
+
+    long getElapsedMillis();
+
+    double getStringsPerSecond();
+
+    double getRequestsPerSecond();
+
+    double getBytesCopiedPerSecond();
+
+    boolean isFinished();
+}
@@ -0,0 +1,151 @@
+package com.modtranslator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a single {@link ModTranslator#translate} run.
+ */
+public class TranslationStats {
+    private final AtomicLong totalStrings = new AtomicLong();
+    private final AtomicLong uniqueStrings = new AtomicLong();
+    private final AtomicLong addedKeys = new AtomicLong();
+    private final AtomicLong changedKeys = new AtomicLong();
+    private final AtomicLong removedKeys = new AtomicLong();
+    private final AtomicLong reusedKeys = new AtomicLong();
+    private final AtomicLong resumedKeys = new AtomicLong();
+    private final AtomicLong skippedStrings = new AtomicLong();
+    private final AtomicLong glossaryTerms = new AtomicLong();
+    private final AtomicLong templatedStrings = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recoveredStrings = new AtomicLong();
+    private final AtomicLong failedStrings = new AtomicLong();
+
+    void addFile(long total, long unique) {
+        totalStrings.addAndGet(total);
+        uniqueStrings.addAndGet(unique);
+    }
+
+    void addIncremental(long added, long changed, long removed, long reused) {
+        addedKeys.addAndGet(added);
+        changedKeys.addAndGet(changed);
+        removedKeys.addAndGet(removed);
+        reusedKeys.addAndGet(reused);
+    }
+
+    void addResumed(long resumed) {
+        resumedKeys.addAndGet(resumed);
+    }
+
+    void addSkipped(long skipped) {
+        skippedStrings.addAndGet(skipped);
+    }
+
+    void addGlossaryTerms(long terms) {
+        glossaryTerms.addAndGet(terms);
+    }
+
+    void addTemplated(long strings) {
+        templatedStrings.addAndGet(strings);
+    }
+
+    void addRetry() {
+        retries.incrementAndGet();
+    }
+
+    void addFailures(long recovered, long failed) {
+        recoveredStrings.addAndGet(recovered);
+        failedStrings.addAndGet(failed);
+    }
+
+    public long getTotalStrings() {
+        return totalStrings.get();
+    }
+
+    // Уникальные строки после удаления цветовых кодов: каждая отправляется не более одного раза
+    public long getUniqueStrings() {
+        return uniqueStrings.get();
+    }
+
+    public long getDuplicateStrings() {
+        return getTotalStrings() - getUniqueStrings();
+    }
+
+    // Счетчики инкрементального перевода относительно предыдущего результата
+    public long getAddedKeys() {
+        return addedKeys.get();
+    }
+
+    public long getChangedKeys() {
+        return changedKeys.get();
+    }
+
+    public long getRemovedKeys() {
+        return removedKeys.get();
+    }
+
+    public long getReusedKeys() {
+        return reusedKeys.get();
+    }
+
+    // Ключи, взятые из журнала прерванного запуска
+    public long getResumedKeys() {
+        return resumedKeys.get();
+    }
+
+    // Значения без текста для перевода (числа, ссылки, идентификаторы, только коды), скопированные как есть
+    public long getSkippedStrings() {
+        return skippedStrings.get();
+    }
+
+    // Термины глоссария, подставленные с фиксированным переводом
+    public long getGlossaryTerms() {
+        return glossaryTerms.get();
+    }
+
+    // Строки, собранные из перевода общего шаблона: числа и материалы подставлены локально
+    public long getTemplatedStrings() {
+        return templatedStrings.get();
+    }
+
+    // Повторные запросы после ошибок и ответов 429/5xx
+    public long getRetries() {
+        return retries.get();
+    }
+
+    // Строки, переведенные только при повторной попытке в конце файла
+    public long getRecoveredStrings() {
+        return recoveredStrings.get();
+    }
+
+    // Строки, оставшиеся без перевода
+    public long getFailedStrings() {
+        return failedStrings.get();
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format("%d strings, %d unique, %d duplicates translated locally",
+            getTotalStrings(), getUniqueStrings(), getDuplicateStrings());
+        if (getAddedKeys() + getChangedKeys() + getRemovedKeys() + getReusedKeys() > 0) {
+            result += String.format("; incremental: %d added, %d changed, %d removed, %d reused",
+                getAddedKeys(), getChangedKeys(), getRemovedKeys(), getReusedKeys());
+        }
+        if (getSkippedStrings() > 0) {
+            result += String.format("; %d untranslatable strings skipped", getSkippedStrings());
+        }
+        if (getGlossaryTerms() > 0) {
+            result += String.format("; %d glossary terms applied", getGlossaryTerms());
+        }
+        if (getTemplatedStrings() > 0) {
+            result += String.format("; %d strings filled from shared templates", getTemplatedStrings());
+        }
+        if (getResumedKeys() > 0) {
+            result += String.format("; %d keys resumed from the journal", getResumedKeys());
+        }
+        if (getRetries() + getRecoveredStrings() + getFailedStrings() > 0) {
+            result += String.format("; %d retries, %d recovered at the end, %d failed",
+                getRetries(), getRecoveredStrings(), getFailedStrings());
+        }
+        return result;
+    }
+}
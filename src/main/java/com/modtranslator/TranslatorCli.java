@@ -0,0 +1,403 @@
+package com.modtranslator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless entry point. {@link MainApp#main} delegates here when it is started with
+ * arguments. Progress and the final summary are printed to stdout as one JSON object per
+ * line; log messages go to stderr.
+ */
+public class TranslatorCli {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_UNTRANSLATED = 3;
+
+    // Сколько Ctrl+C ждет, пока перевод остановится и допишет журнал
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private static final String USAGE = String.join("\n",
+        "Usage: java -jar mod-translator.jar [options] <mod.jar | mods directory>...",
+        "",
+        "Options:",
+        "  -o, --output <dir>            output directory (default: translated_mods)",
+        "  -l, --language <names>        target language, repeatable or comma-separated, e.g. Russian,German",
+        "      --previous <path>         previous translation: directory with translated_<jar>, a JAR or a lang file",
+        "      --backend <name>          translation backend: " + String.join(", ", TranslationBackend.availableNames()),
+        "      --endpoint <url>          endpoint of the google backend",
+        "      --parallelism <n>         worker threads for blocking backends (default 4)",
+        "      --max-in-flight <n>       translation requests in flight (default 64)",
+        "      --jar-parallelism <n>     JAR files processed at the same time (default 4)",
+        "      --lang-file-parallelism <n>  language files processed at the same time (default 8)",
+        "      --buffer-memory-mb <n>    memory for lines and translations waiting between stages (default 64)",
+        "      --rps <n>                 initial requests per second, 0 disables the limit (default 20)",
+        "      --max-rps <n>             upper bound for adaptive rate control (default 100)",
+        "      --no-adaptive-rate        keep the request rate fixed",
+        "      --max-retries <n>         retries per request (default 4)",
+        "      --batch-chars <n>         characters per batched request, 0 disables batching (default 1000)",
+        "      --cache <dir>             translation memory directory, one subdirectory per backend (default ~/.mod_translator/translation_memory)",
+        "      --cache-max-mb <n>        translation memory size limit (default 256)",
+        "      --no-cache                do not use the translation memory",
+        "      --skip-keys <regex>       copy values of matching keys untranslated, repeatable",
+        "      --min-letter-ratio <r>    skip values with a smaller share of letters (default 0.25)",
+        "      --no-skip                 send numbers, URLs and identifiers for translation too",
+        "      --glossary <dir>          glossaries <language code>.tsv: term<TAB>translation, or term to keep it",
+        "      --modpack                 translate strings shared by several mods once: scan all JARs first",
+        "      --no-templates            translate values differing only by numbers or materials one by one",
+        "      --no-nested-jars          copy JARs in META-INF/jarjar and META-INF/jars without translating them",
+        "      --nested-jar-memory-mb <n> memory for nested JARs rebuilt at the same time (default 256)",
+        "      --no-checkpoint           do not keep a journal for resuming an interrupted run",
+        "      --progress <json|none>    progress output on stdout (default json)",
+        "      --metrics <file>          write a JSON metrics report (also available over JMX)",
+        "      --log                     also write mod_translator.log",
+        "      --list-languages          print name, service code and Minecraft locale of each language",
+        "  -h, --help                    print this help and exit",
+        "",
+        "Exit codes: 0 success, 1 at least one input failed, 2 invalid arguments,",
+        "            3 finished but some strings were left untranslated");
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    TranslatorCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new TranslatorCli(System.out, System.err).run(args));
+    }
+
+    int run(String[] args) {
+        ModTranslator translator = new ModTranslator();
+        List<File> inputs = new ArrayList<>();
+        List<String> languages = new ArrayList<>();
+        List<String> skipKeys = new ArrayList<>();
+        String outputDirectory = "translated_mods";
+        boolean jsonProgress = true;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-h":
+                    case "--help":
+                        out.println(USAGE);
+                        return EXIT_OK;
+                    case "--list-languages":
+                        for (Language language : Language.all()) {
+                            out.println(language.getName() + "\t" + language.getCode() + "\t" + language.getMinecraftLocale());
+                        }
+                        return EXIT_OK;
+                    case "-o":
+                    case "--output":
+                        outputDirectory = value(args, ++i, arg);
+                        break;
+                    case "-l":
+                    case "--language":
+                        for (String language : value(args, ++i, arg).split(",")) {
+                            languages.add(resolveLanguage(language.trim()));
+                        }
+                        break;
+                    case "--previous":
+                        translator.setPreviousTranslation(new File(value(args, ++i, arg)));
+                        break;
+                    case "--backend":
+                        translator.setBackend(value(args, ++i, arg));
+                        break;
+                    case "--endpoint":
+                        translator.setEndpoint(value(args, ++i, arg));
+                        break;
+                    case "--parallelism":
+                        translator.setParallelism(intValue(args, ++i, arg));
+                        break;
+                    case "--max-in-flight":
+                        translator.setMaxInFlight(intValue(args, ++i, arg));
+                        break;
+                    case "--buffer-memory-mb":
+                        translator.setBufferMemory(intValue(args, ++i, arg) * 1024L * 1024);
+                        break;
+                    case "--jar-parallelism":
+                        translator.setJarParallelism(intValue(args, ++i, arg));
+                        break;
+                    case "--lang-file-parallelism":
+                        translator.setLangFileParallelism(intValue(args, ++i, arg));
+                        break;
+                    case "--rps":
+                        translator.setRequestsPerSecond(doubleValue(args, ++i, arg));
+                        break;
+                    case "--max-rps":
+                        translator.setMaxRequestsPerSecond(doubleValue(args, ++i, arg));
+                        break;
+                    case "--no-adaptive-rate":
+                        translator.setAdaptiveRate(false);
+                        break;
+                    case "--max-retries":
+                        translator.setMaxRetries(intValue(args, ++i, arg));
+                        break;
+                    case "--batch-chars":
+                        translator.setBatchCharLimit(intValue(args, ++i, arg));
+                        break;
+                    case "--cache":
+                        translator.setTranslationMemoryDirectory(new File(value(args, ++i, arg)));
+                        break;
+                    case "--cache-max-mb":
+                        translator.setTranslationMemoryMaxBytes(intValue(args, ++i, arg) * 1024L * 1024);
+                        break;
+                    case "--no-cache":
+                        translator.setTranslationMemoryDirectory(null);
+                        break;
+                    case "--skip-keys":
+                        skipKeys.add(value(args, ++i, arg));
+                        break;
+                    case "--min-letter-ratio":
+                        translator.setMinLetterRatio(doubleValue(args, ++i, arg));
+                        break;
+                    case "--no-skip":
+                        translator.setSkipUntranslatable(false);
+                        break;
+                    case "--glossary":
+                        translator.setGlossaryDirectory(new File(value(args, ++i, arg)));
+                        break;
+                    case "--modpack":
+                        translator.setSharedDictionaryEnabled(true);
+                        break;
+                    case "--no-templates":
+                        translator.setTemplateReuseEnabled(false);
+                        break;
+                    case "--no-nested-jars":
+                        translator.setNestedJarsEnabled(false);
+                        break;
+                    case "--nested-jar-memory-mb":
+                        translator.setNestedJarMemory(intValue(args, ++i, arg) * 1024L * 1024);
+                        break;
+                    case "--no-checkpoint":
+                        translator.setCheckpointEnabled(false);
+                        break;
+                    case "--progress":
+                        String progress = value(args, ++i, arg);
+                        if (!progress.equals("json") && !progress.equals("none")) {
+                            throw new IllegalArgumentException("--progress must be json or none: " + progress);
+                        }
+                        jsonProgress = progress.equals("json");
+                        break;
+                    case "--metrics":
+                        translator.setMetricsReport(new File(value(args, ++i, arg)));
+                        break;
+                    case "--log":
+                        ModTranslator.setLoggingEnabled(true);
+                        break;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        addInput(inputs, new File(arg));
+                }
+            }
+            translator.setSkipKeyPatterns(skipKeys);
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No input JAR files given");
+            }
+            if (languages.isEmpty()) {
+                throw new IllegalArgumentException("No target language given (use --language)");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println();
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        // Ctrl+C: останавливаем перевод, незавершенные выходные файлы удаляются, журнал остается.
+        // JVM завершается после хука, поэтому он ждет конца запуска: иначе буфер журнала теряется
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread stopHook = new Thread(() -> {
+            translator.stopTranslation();
+            try {
+                finished.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "translator-stop");
+        Runtime.getRuntime().addShutdownHook(stopHook);
+        long start = System.nanoTime();
+        Map<File, Exception> failures;
+        try {
+            failures = translator.translateAll(inputs, outputDirectory, languages,
+                jsonProgress ? new JsonProgress() : null);
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILED;
+        } finally {
+            finished.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(stopHook);
+            } catch (IllegalStateException e) {
+                // JVM уже завершается
+            }
+        }
+
+        List<String> failedStrings = translator.getFailedStrings();
+        printSummary(inputs, failures, translator.getStats(), translator.getMetrics(), failedStrings,
+            (System.nanoTime() - start) / 1_000_000);
+        if (!failures.isEmpty()) {
+            return EXIT_FAILED;
+        }
+        return failedStrings.isEmpty() ? EXIT_OK : EXIT_UNTRANSLATED;
+    }
+
+    private static void addInput(List<File> inputs, File input) {
+        if (input.isDirectory()) {
+            List<File> jars = ModTranslator.findJars(input);
+            if (jars.isEmpty()) {
+                throw new IllegalArgumentException("No JAR files in " + input);
+            }
+            inputs.addAll(jars);
+        } else if (input.isFile()) {
+            inputs.add(input);
+        } else {
+            throw new IllegalArgumentException("Input not found: " + input);
+        }
+    }
+
+    // Название языка без учета регистра, как в списке --list-languages
+    private static String resolveLanguage(String name) {
+        Language language = Language.forName(name);
+        if (language == null) {
+            throw new IllegalArgumentException("Unsupported language: " + name);
+        }
+        return language.getName();
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int intValue(String[] args, int index, String option) {
+        try {
+            return Integer.parseInt(value(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + args[index]);
+        }
+    }
+
+    private static double doubleValue(String[] args, int index, String option) {
+        try {
+            return Double.parseDouble(value(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + args[index]);
+        }
+    }
+
+    private void printSummary(List<File> inputs, Map<File, Exception> failures, TranslationStats stats,
+                              TranslationMetrics metrics, List<String> failedStrings, long elapsedMillis) {
+        JsonObject summary = new JsonObject();
+        summary.addProperty("event", "summary");
+        summary.addProperty("inputs", inputs.size());
+        summary.addProperty("succeeded", inputs.size() - failures.size());
+        summary.addProperty("failed", failures.size());
+        summary.addProperty("elapsedMillis", elapsedMillis);
+        JsonObject statistics = new JsonObject();
+        statistics.addProperty("totalStrings", stats.getTotalStrings());
+        statistics.addProperty("uniqueStrings", stats.getUniqueStrings());
+        statistics.addProperty("duplicateStrings", stats.getDuplicateStrings());
+        statistics.addProperty("addedKeys", stats.getAddedKeys());
+        statistics.addProperty("changedKeys", stats.getChangedKeys());
+        statistics.addProperty("removedKeys", stats.getRemovedKeys());
+        statistics.addProperty("reusedKeys", stats.getReusedKeys());
+        statistics.addProperty("resumedKeys", stats.getResumedKeys());
+        statistics.addProperty("skippedStrings", stats.getSkippedStrings());
+        statistics.addProperty("glossaryTerms", stats.getGlossaryTerms());
+        statistics.addProperty("templatedStrings", stats.getTemplatedStrings());
+        statistics.addProperty("retries", stats.getRetries());
+        statistics.addProperty("recoveredStrings", stats.getRecoveredStrings());
+        statistics.addProperty("failedStrings", stats.getFailedStrings());
+        summary.add("stats", statistics);
+        summary.add("metrics", metrics.toJson());
+        JsonObject errors = new JsonObject();
+        for (Map.Entry<File, Exception> failure : failures.entrySet()) {
+            errors.addProperty(failure.getKey().getPath(), String.valueOf(failure.getValue().getMessage()));
+        }
+        summary.add("errors", errors);
+        JsonArray untranslated = new JsonArray();
+        for (String failedString : failedStrings) {
+            untranslated.add(failedString);
+        }
+        summary.add("untranslated", untranslated);
+        out.println(gson.toJson(summary));
+        out.flush();
+    }
+
+    // Печатает событие при изменении процента, чтобы не выводить строку на каждый ключ
+    private final class JsonProgress implements ModTranslator.BatchProgressListener {
+        private final Map<File, Integer> jarPercents = new LinkedHashMap<>();
+        private int overallPercent = -1;
+
+        @Override
+        public synchronized void onJarProgress(File jar, int current, int total) {
+            int percent = percent(current, total);
+            Integer previous = jarPercents.put(jar, percent);
+            if (previous == null || previous != percent) {
+                JsonObject event = new JsonObject();
+                event.addProperty("event", "progress");
+                event.addProperty("jar", jar.getPath());
+                event.addProperty("current", current);
+                event.addProperty("total", total);
+                event.addProperty("percent", percent);
+                print(event);
+            }
+        }
+
+        @Override
+        public synchronized void onJarFinished(File jar, Exception error) {
+            jarPercents.remove(jar);
+            JsonObject event = new JsonObject();
+            event.addProperty("event", "finished");
+            event.addProperty("jar", jar.getPath());
+            event.addProperty("status", error == null ? "ok" : "failed");
+            if (error != null) {
+                event.addProperty("error", String.valueOf(error.getMessage()));
+            }
+            print(event);
+        }
+
+        @Override
+        public synchronized void onOverallProgress(int current, int total) {
+            int percent = percent(current, total);
+            if (percent != overallPercent) {
+                overallPercent = percent;
+                JsonObject event = new JsonObject();
+                event.addProperty("event", "overall");
+                event.addProperty("current", current);
+                event.addProperty("total", total);
+                event.addProperty("percent", percent);
+                print(event);
+            }
+        }
+
+        private int percent(int current, int total) {
+            return total > 0 ? (int) (current * 100L / total) : 0;
+        }
+
+        private void print(JsonObject event) {
+            out.println(gson.toJson(event));
+            out.flush();
+        }
+    }
+}
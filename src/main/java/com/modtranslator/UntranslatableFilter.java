@@ -0,0 +1,73 @@
+package com.modtranslator;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides before dispatch whether a value would come back from the translation service
+ * unchanged: numbers, URLs, resource identifiers such as {@code modid:item_name}, text with
+ * too few letters, and keys matching a deny-list. Such values are written through as is.
+ * Values made only of formatting codes and placeholders never reach the filter, the
+ * tokenizer already leaves nothing to translate in them.
+ */
+final class UntranslatableFilter {
+    private static final Pattern URL = Pattern.compile("(?i)(?:https?://|www\\.)\\S+");
+    private static final Pattern RESOURCE_ID = Pattern.compile("[a-z0-9_.-]+:[a-z0-9_./-]+");
+    private static final Pattern SNAKE_CASE_ID = Pattern.compile("[a-z0-9]+(?:_[a-z0-9]+)+");
+
+    private final List<Pattern> keyDenyList;
+    private final double minLetterRatio;
+
+    UntranslatableFilter(List<Pattern> keyDenyList, double minLetterRatio) {
+        this.keyDenyList = keyDenyList;
+        this.minLetterRatio = minLetterRatio;
+    }
+
+    // text - значение после токенизатора: маркеры {0}, {1} на месте плейсхолдеров
+    boolean isUntranslatable(String key, String text) {
+        for (Pattern pattern : keyDenyList) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        if (letterRatio(text) < minLetterRatio) {
+            return true;
+        }
+        // Идентификаторы и ссылки - одно слово без пробелов
+        String trimmed = text.trim();
+        if (trimmed.indexOf(' ') >= 0) {
+            return false;
+        }
+        return URL.matcher(trimmed).matches()
+            || RESOURCE_ID.matcher(trimmed).matches()
+            || SNAKE_CASE_ID.matcher(trimmed).matches();
+    }
+
+    // Доля букв среди непробельных символов, маркеры плейсхолдеров не считаются
+    static double letterRatio(String text) {
+        int letters = 0;
+        int visible = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch == '{') {
+                int end = i + 1;
+                while (end < length && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                    end++;
+                }
+                if (end > i + 1 && end < length && text.charAt(end) == '}') {
+                    i = end;
+                    continue;
+                }
+            }
+            if (Character.isWhitespace(ch)) {
+                continue;
+            }
+            visible++;
+            if (Character.isLetter(ch)) {
+                letters++;
+            }
+        }
+        return visible > 0 ? (double) letters / visible : 0;
+    }
+}
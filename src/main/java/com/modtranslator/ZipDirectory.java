@@ -0,0 +1,224 @@
+package com.modtranslator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of a ZIP archive held in a {@link ByteBuffer} (a mapped file or an in-memory
+ * nested JAR). Only the central directory is parsed up front; entry data stays in the buffer and
+ * can be copied raw or opened as a stream. ZIP64 archives are not supported.
+ */
+final class ZipDirectory {
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+
+    static final class Entry {
+        final String name;
+        final int method;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        // Исходная запись центрального каталога (имя, extra и комментарий включительно)
+        final byte[] centralRecord;
+        final int localHeaderOffset;
+        final int dataOffset;
+        final int localExtraLength;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, byte[] centralRecord,
+              int localHeaderOffset, int dataOffset, int localExtraLength) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.centralRecord = centralRecord;
+            this.localHeaderOffset = localHeaderOffset;
+            this.dataOffset = dataOffset;
+            this.localExtraLength = localExtraLength;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final ByteBuffer archive;
+    private final List<Entry> entries;
+
+    private ZipDirectory(ByteBuffer archive, List<Entry> entries) {
+        this.archive = archive;
+        this.entries = entries;
+    }
+
+    static ZipDirectory read(ByteBuffer buffer) throws IOException {
+        ByteBuffer archive = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int length = archive.limit();
+        int end = findEnd(archive, length);
+        int entryCount = archive.getShort(end + 10) & 0xffff;
+        long centralSize = archive.getInt(end + 12) & 0xffffffffL;
+        long centralOffset = archive.getInt(end + 16) & 0xffffffffL;
+        if (entryCount == 0xffff || centralSize == 0xffffffffL || centralOffset == 0xffffffffL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        // Архив может начинаться не с нуля (например, с приписанным загрузчиком)
+        long shift = end - centralSize - centralOffset;
+        if (shift < 0) {
+            throw new ZipException("Invalid central directory offset");
+        }
+
+        List<Entry> entries = new ArrayList<>(entryCount);
+        int position = (int) (centralOffset + shift);
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_SIZE > end || archive.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at " + position);
+            }
+            int method = archive.getShort(position + 10) & 0xffff;
+            long crc = archive.getInt(position + 16) & 0xffffffffL;
+            long compressedSize = archive.getInt(position + 20) & 0xffffffffL;
+            long size = archive.getInt(position + 24) & 0xffffffffL;
+            int nameLength = archive.getShort(position + 28) & 0xffff;
+            int extraLength = archive.getShort(position + 30) & 0xffff;
+            int commentLength = archive.getShort(position + 32) & 0xffff;
+            long localOffset = archive.getInt(position + 42) & 0xffffffffL;
+            if (compressedSize == 0xffffffffL || size == 0xffffffffL || localOffset == 0xffffffffL) {
+                throw new ZipException("ZIP64 archives are not supported");
+            }
+            int recordLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            byte[] centralRecord = new byte[recordLength];
+            for (int j = 0; j < recordLength; j++) {
+                centralRecord[j] = archive.get(position + j);
+            }
+            // Как и JarFile, читаем имена в UTF-8 независимо от флага 0x800
+            String name = new String(centralRecord, CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+
+            int localHeader = (int) (localOffset + shift);
+            if (localHeader + LOCAL_HEADER_SIZE > length || archive.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid local header for " + name);
+            }
+            int localNameLength = archive.getShort(localHeader + 26) & 0xffff;
+            int localExtraLength = archive.getShort(localHeader + 28) & 0xffff;
+            long dataOffset = (long) localHeader + LOCAL_HEADER_SIZE + localNameLength + localExtraLength;
+            if (dataOffset + compressedSize > length) {
+                throw new ZipException("Truncated entry data for " + name);
+            }
+            entries.add(new Entry(name, method, crc, compressedSize, size, centralRecord,
+                localHeader, (int) dataOffset, localExtraLength));
+            position += recordLength;
+        }
+        return new ZipDirectory(archive, Collections.unmodifiableList(entries));
+    }
+
+    private static int findEnd(ByteBuffer archive, int length) throws ZipException {
+        int lowest = Math.max(0, length - END_SIZE - 0xffff);
+        for (int position = length - END_SIZE; position >= lowest; position--) {
+            if (archive.getInt(position) == END_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new ZipException("Not a ZIP archive: end of central directory not found");
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    // Сжатые данные записи в том виде, как они лежат в архиве
+    ByteBuffer rawData(Entry entry) {
+        ByteBuffer data = archive.duplicate();
+        data.limit((int) (entry.dataOffset + entry.compressedSize));
+        data.position(entry.dataOffset);
+        return data.slice();
+    }
+
+    ByteBuffer localExtra(Entry entry) {
+        ByteBuffer extra = archive.duplicate();
+        extra.limit(entry.dataOffset);
+        extra.position(entry.dataOffset - entry.localExtraLength);
+        return extra.slice();
+    }
+
+    InputStream openStream(Entry entry) throws IOException {
+        InputStream raw = new ByteBufferInputStream(rawData(entry));
+        switch (entry.method) {
+            case ZipEntry.STORED:
+                return raw;
+            case ZipEntry.DEFLATED:
+                Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(raw, inflater, 8192) {
+                    private boolean closed;
+                    private boolean paddingFed;
+
+                    @Override
+                    public int available() throws IOException {
+                        return inflater.finished() ? 0 : super.available();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+
+                    @Override
+                    protected void fill() throws IOException {
+                        // Inflater в режиме nowrap может запросить один лишний байт после конца данных
+                        if (this.in.available() == 0 && !paddingFed) {
+                            paddingFed = true;
+                            buf[0] = 0;
+                            len = 1;
+                            inflater.setInput(buf, 0, 1);
+                            return;
+                        }
+                        super.fill();
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
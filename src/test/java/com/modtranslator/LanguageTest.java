@@ -0,0 +1,24 @@
+package com.modtranslator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class LanguageTest {
+    @Test
+    public void noTargetOverwritesTheSourceFile() {
+        assertNull(Language.forName("English"));
+        for (Language language : Language.all()) {
+            assertNotEquals(language.getName(), "en_us", language.getMinecraftLocale());
+        }
+    }
+
+    @Test
+    public void namesAreCaseInsensitive() {
+        Language hebrew = Language.forName("hebrew");
+        assertEquals("iw", hebrew.getCode());
+        assertEquals("he_il", hebrew.getMinecraftLocale());
+    }
+}
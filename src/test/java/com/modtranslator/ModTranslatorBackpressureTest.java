@@ -0,0 +1,137 @@
+package com.modtranslator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * One reader thread feeds the translations of a file into every target language. With a tiny
+ * line budget, the queue of one language must not wait for budget held by the queue of another
+ * language, which only the same thread can write out.
+ */
+public class ModTranslatorBackpressureTest {
+    private static final int KEYS = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 60000)
+    public void severalLanguagesWithTinyBudgetFinish() throws IOException {
+        File jar = createJar(folder.newFolder("in"));
+        File output = folder.newFolder("out");
+
+        ModTranslator translator = new ModTranslator();
+        // Очередь русского пустеет сразу, бюджет занимают строки немецкого и французского
+        SkewedBackend backend = new SkewedBackend();
+        translator.setBackend(backend);
+        translator.setBatchCharLimit(0);
+        translator.setTranslationMemoryDirectory(null);
+        translator.setCheckpointEnabled(false);
+        translator.setTemplateReuseEnabled(false);
+        translator.setRequestsPerSecond(0);
+        translator.setBufferMemory(1024 * 1024);
+        try {
+            translator.translate(jar.getPath(), output.getPath(), Arrays.asList("Russian", "German", "French"));
+        } finally {
+            backend.close();
+        }
+
+        try (ZipFile result = new ZipFile(new File(output, "translated_mod.jar"))) {
+            for (String locale : Arrays.asList("ru_ru", "de_de", "fr_fr")) {
+                ZipEntry entry = result.getEntry("assets/test/lang/" + locale + ".json");
+                assertNotNull(locale, entry);
+                JsonObject values;
+                try (InputStreamReader reader = new InputStreamReader(result.getInputStream(entry), StandardCharsets.UTF_8)) {
+                    values = JsonParser.parseReader(reader).getAsJsonObject();
+                }
+                assertEquals(KEYS, values.size());
+                String code = locale.substring(0, 2);
+                assertEquals("[" + code + "] " + value(0), values.get("key.0").getAsString());
+                assertEquals("[" + code + "] " + value(KEYS - 1), values.get("key." + (KEYS - 1)).getAsString());
+            }
+        }
+    }
+
+    private static File createJar(File directory) throws IOException {
+        File jar = new File(directory, "mod.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("assets/test/lang/en_us.json"));
+            JsonObject values = new JsonObject();
+            for (int i = 0; i < KEYS; i++) {
+                values.addProperty("key." + i, value(i));
+            }
+            out.write(values.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return jar;
+    }
+
+    // Длинные разные значения: бюджет в 512 KB вмещает лишь пару сотен строк
+    private static String value(int index) {
+        String[] words = {"ancient", "machine", "storage", "energy", "glowing", "fluid", "table", "power"};
+        Random random = new Random(index);
+        StringBuilder value = new StringBuilder("Value ").append(Integer.toString(index, 26).replaceAll("[0-9]", "x"));
+        for (int i = 0; i < 40; i++) {
+            value.append(' ').append(words[random.nextInt(words.length)]);
+        }
+        return value.toString();
+    }
+
+    // Русский переводится сразу в вызывающем потоке, остальные языки - позже в другом потоке
+    private static final class SkewedBackend implements TranslationBackend {
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "skewed-backend");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        @Override
+        public String getName() {
+            return "skewed";
+        }
+
+        @Override
+        public boolean isAsync() {
+            return true;
+        }
+
+        @Override
+        public String translate(String text, String targetLangCode) {
+            return "[" + targetLangCode + "] " + text;
+        }
+
+        @Override
+        public CompletableFuture<String> translateAsync(String text, String targetLangCode) {
+            if ("ru".equals(targetLangCode)) {
+                return CompletableFuture.completedFuture(translate(text, targetLangCode));
+            }
+            CompletableFuture<String> future = new CompletableFuture<>();
+            timer.schedule(() -> future.complete(translate(text, targetLangCode)), 20, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        @Override
+        public void close() {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.modtranslator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModTranslatorModpackTest {
+    private static final List<String> SHARED = Arrays.asList("Copper Ingot", "Iron Gear", "Energy Cell", "Fluid Tank");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 60000)
+    public void textsSharedByTheJarsAreTranslatedOnce() throws IOException {
+        File input = folder.newFolder("in");
+        List<File> jars = new ArrayList<>();
+        for (String mod : Arrays.asList("alpha", "beta", "gamma")) {
+            JsonObject values = new JsonObject();
+            for (String text : SHARED) {
+                values.addProperty("item." + mod + "." + text.toLowerCase().replace(' ', '_'), text);
+            }
+            values.addProperty("block." + mod + ".machine", "Machine of " + mod);
+            jars.add(createJar(new File(input, mod + ".jar"), values));
+        }
+        File output = folder.newFolder("out");
+
+        ModTranslator translator = new ModTranslator();
+        CountingBackend backend = new CountingBackend();
+        translator.setBackend(backend);
+        translator.setSharedDictionaryEnabled(true);
+        translator.setTranslationMemoryDirectory(null);
+        translator.setCheckpointEnabled(false);
+        translator.setTemplateReuseEnabled(false);
+        translator.setRequestsPerSecond(0);
+        Map<File, Exception> failures = translator.translateAll(jars, output.getPath(), Arrays.asList("Russian", "German"), null);
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (String code : Arrays.asList("ru", "de")) {
+            for (String text : SHARED) {
+                assertEquals(code + ": " + text, 1, backend.requests(code, text));
+            }
+            for (String mod : Arrays.asList("alpha", "beta", "gamma")) {
+                assertEquals(1, backend.requests(code, "Machine of " + mod));
+            }
+        }
+        for (String mod : Arrays.asList("alpha", "beta", "gamma")) {
+            JsonObject translated = read(new File(output, "translated_" + mod + ".jar"), "assets/test/lang/ru_ru.json");
+            assertEquals(SHARED.size() + 1, translated.size());
+            assertEquals("[ru] Iron Gear", translated.get("item." + mod + ".iron_gear").getAsString());
+            assertEquals("[ru] Machine of " + mod, translated.get("block." + mod + ".machine").getAsString());
+        }
+    }
+
+    @Test
+    public void dictionaryOrdersTextsByFrequency() {
+        Language russian = Language.forName("Russian");
+        SharedDictionary dictionary = new SharedDictionary();
+        Map<String, Integer> first = new HashMap<>();
+        first.put("Rare", 1);
+        first.put("Common", 3);
+        Map<String, Integer> second = new HashMap<>();
+        second.put("Common", 2);
+        second.put("Usual", 2);
+        dictionary.addCounts(russian, first);
+        dictionary.addCounts(russian, second);
+        dictionary.freeze();
+
+        assertEquals(Arrays.asList("Common", "Usual", "Rare"), new ArrayList<>(dictionary.translations(russian).keySet()));
+        assertEquals(8, dictionary.occurrences(russian));
+        assertTrue(dictionary.translations(Language.forName("German")).isEmpty());
+
+        dictionary.completeRemaining(true);
+        assertEquals("Rare", dictionary.translations(russian).get("Rare").join());
+    }
+
+    private static File createJar(File jar, JsonObject values) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("assets/test/lang/en_us.json"));
+            out.write(values.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return jar;
+    }
+
+    private static JsonObject read(File jar, String entryName) throws IOException {
+        try (ZipFile zip = new ZipFile(jar);
+             InputStreamReader reader = new InputStreamReader(zip.getInputStream(zip.getEntry(entryName)), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+
+    // Считает запросы по языку и тексту
+    private static final class CountingBackend implements TranslationBackend {
+        private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+        int requests(String targetLangCode, String text) {
+            AtomicInteger count = requests.get(targetLangCode + '\0' + text);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public String translate(String text, String targetLangCode) {
+            requests.computeIfAbsent(targetLangCode + '\0' + text, k -> new AtomicInteger()).incrementAndGet();
+            return "[" + targetLangCode + "] " + text;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
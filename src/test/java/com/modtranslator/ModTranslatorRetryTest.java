@@ -0,0 +1,112 @@
+package com.modtranslator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Strings that still fail after all retries are tried once more at the end of the file, for
+ * every target language.
+ */
+public class ModTranslatorRetryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 60000)
+    public void failedStringsAreRetriedAtTheEndOfTheFile() throws IOException {
+        JsonObject values = new JsonObject();
+        for (int i = 0; i < 20; i++) {
+            values.addProperty("item." + i, "Polished stone slab number " + (char) ('a' + i));
+        }
+        values.addProperty("flaky.1", "Flaky ancient machine");
+        values.addProperty("flaky.2", "Flaky glowing fluid");
+        values.addProperty("broken", "Broken energy storage");
+        File jar = createJar(folder.newFolder("in"), values);
+        File output = folder.newFolder("out");
+
+        ModTranslator translator = new ModTranslator();
+        translator.setBackend(new FlakyBackend());
+        translator.setBatchCharLimit(0);
+        translator.setMaxRetries(0);
+        translator.setRetryDelays(10, 100);
+        translator.setTranslationMemoryDirectory(null);
+        translator.setCheckpointEnabled(false);
+        translator.setTemplateReuseEnabled(false);
+        translator.setRequestsPerSecond(0);
+        translator.translate(jar.getPath(), output.getPath(), Arrays.asList("Russian", "German"));
+
+        assertEquals(4, translator.getStats().getRecoveredStrings());
+        assertEquals(Arrays.asList("German: Broken energy storage", "Russian: Broken energy storage"),
+            sorted(translator.getFailedStrings()));
+        try (ZipFile result = new ZipFile(new File(output, "translated_mod.jar"))) {
+            for (String locale : Arrays.asList("ru_ru", "de_de")) {
+                JsonObject translated;
+                ZipEntry entry = result.getEntry("assets/test/lang/" + locale + ".json");
+                try (InputStreamReader reader = new InputStreamReader(result.getInputStream(entry), StandardCharsets.UTF_8)) {
+                    translated = JsonParser.parseReader(reader).getAsJsonObject();
+                }
+                String code = locale.substring(0, 2);
+                assertEquals(values.size(), translated.size());
+                assertEquals("[" + code + "] Flaky ancient machine", translated.get("flaky.1").getAsString());
+                assertEquals("[" + code + "] Flaky glowing fluid", translated.get("flaky.2").getAsString());
+                assertEquals("[" + code + "] Polished stone slab number a", translated.get("item.0").getAsString());
+                // Непереведенная строка остается на языке оригинала
+                assertEquals("Broken energy storage", translated.get("broken").getAsString());
+            }
+        }
+    }
+
+    private static File createJar(File directory, JsonObject values) throws IOException {
+        File jar = new File(directory, "mod.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("assets/test/lang/en_us.json"));
+            out.write(values.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return jar;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        Collections.sort(values);
+        return values;
+    }
+
+    // Строки "Flaky" не переводятся с первой попытки, строка "Broken" не переводится никогда
+    private static final class FlakyBackend implements TranslationBackend {
+        private final Set<String> failedOnce = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public String getName() {
+            return "flaky";
+        }
+
+        @Override
+        public String translate(String text, String targetLangCode) throws IOException {
+            if (text.startsWith("Broken") || (text.startsWith("Flaky") && failedOnce.add(targetLangCode + text))) {
+                throw new IOException("Service unavailable");
+            }
+            return "[" + targetLangCode + "] " + text;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
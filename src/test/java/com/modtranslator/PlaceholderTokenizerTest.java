@@ -0,0 +1,88 @@
+package com.modtranslator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceholderTokenizerTest {
+    private final PlaceholderTokenizer tokenizer = new PlaceholderTokenizer();
+
+    @Test
+    public void plainTextIsSentAsIs() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("Polished Stone");
+        assertEquals("Polished Stone", template.text);
+        assertEquals(0, template.markerCount());
+        assertEquals("Полированный камень", template.restore("Полированный камень"));
+    }
+
+    @Test
+    public void edgeSpansAreCutAndInteriorSpansBecomeMarkers() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("§aGive %1$s to %2$d players§r ");
+        assertEquals("Give {0} to {1} players", template.text);
+        assertEquals(2, template.markerCount());
+        assertEquals("§aОтдать %2$d игрокам %1$s§r ", template.restore("Отдать {1} игрокам {0}"));
+    }
+
+    @Test
+    public void adjacentSpansFormOneMarker() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("Press §e%s§r to open");
+        assertEquals("Press {0} to open", template.text);
+        assertEquals("Нажмите §e%s§r, чтобы открыть", template.restore("Нажмите {0}, чтобы открыть"));
+    }
+
+    @Test
+    public void lineBreaksAndMessageFormatArePreserved() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("First line\\nSecond {0,number} line\n");
+        assertEquals("First line{0}Second {1} line", template.text);
+        assertEquals("Первая строка\\nВторая {0,number} строка\n", template.restore("Первая строка{0}Вторая {1} строка"));
+    }
+
+    @Test
+    public void markersWithSpacesFromTheServiceAreRestored() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("Deals %s damage");
+        assertEquals("Наносит %s урона", template.restore("Наносит { 0 } урона"));
+    }
+
+    @Test
+    public void lostOrDuplicatedMarkersFailTheRestore() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("Give %s to %s now");
+        assertNull(template.restore("Отдать {0} сейчас"));
+        assertNull(template.restore("Отдать {0} для {0} сейчас"));
+        assertEquals("Отдать %s для %s сейчас", template.restore("Отдать {0} для {1} сейчас"));
+    }
+
+    @Test
+    public void percentSignsThatAreNotPlaceholdersStayInTheText() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("50% off, 100%% sure");
+        assertEquals("50% off, 100{0} sure", template.text);
+        assertEquals("{}", tokenizer.tokenize("{}").text);
+    }
+
+    @Test
+    public void valuesWithoutTextAreBlank() {
+        assertTrue(tokenizer.tokenize("§e%s§r").isBlank());
+        assertTrue(tokenizer.tokenize("%1$s%2$s").isBlank());
+        assertFalse(tokenizer.tokenize("%s items").isBlank());
+    }
+
+    @Test
+    public void glossaryTermsFollowTheSpanMarkers() {
+        PlaceholderTokenizer.Template template = tokenizer.tokenize("Charge %s with Redstone")
+            .withTerms("Charge {0} with {1}", new String[] {"Редстоун"});
+        assertEquals(1, template.termCount());
+        assertEquals(2, template.markerCount());
+        assertEquals("Зарядите %s с помощью Редстоун", template.restore("Зарядите {0} с помощью {1}"));
+    }
+
+    @Test
+    public void tokenizerIsReusedBetweenValues() {
+        PlaceholderTokenizer.Template first = tokenizer.tokenize("A %s b %s c %s d");
+        PlaceholderTokenizer.Template second = tokenizer.tokenize("Just text");
+        assertEquals("A {0} b {1} c {2} d", first.text);
+        assertEquals("Just text", second.text);
+        assertEquals("А %s б %s в %s г", first.restore("А {0} б {1} в {2} г"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.modtranslator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Entries copied raw from a {@link ZipDirectory} and entries added with {@link RawZipWriter#putEntry}
+ * must read back the same through {@link ZipFile} (central directory) and {@link ZipInputStream}
+ * (local headers).
+ */
+public class RawZipWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void copiedAndAddedEntriesReadBack() throws IOException {
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        byte[] source = sourceArchive(expected);
+
+        ZipDirectory directory = ZipDirectory.read(ByteBuffer.wrap(source));
+        assertEquals(expected.size(), directory.entries().size());
+        File output = folder.newFile("copy.jar");
+        byte[] added = "{\"item.test.stone\":\"Камень\"}".getBytes(StandardCharsets.UTF_8);
+        try (RawZipWriter writer = new RawZipWriter(Channels.newChannel(new FileOutputStream(output)))) {
+            for (ZipDirectory.Entry entry : directory.entries()) {
+                writer.copyRaw(directory, entry);
+            }
+            // Повторная запись пропускается, новая с тем же именем запрещена
+            writer.copyRaw(directory, directory.entries().get(0));
+            try {
+                writer.putEntry(directory.entries().get(0).name, added);
+                fail("Duplicate entry written");
+            } catch (ZipException expectedError) {
+                // Имя уже занято
+            }
+            writer.putEntry("assets/test/lang/ru_ru.json", added);
+        }
+        expected.put("assets/test/lang/ru_ru.json", added);
+
+        try (ZipFile zip = new ZipFile(output)) {
+            assertEquals(expected.size(), zip.size());
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                ZipEntry zipEntry = zip.getEntry(entry.getKey());
+                assertNotNull(entry.getKey(), zipEntry);
+                assertEquals(entry.getKey(), crc(entry.getValue()), zipEntry.getCrc());
+                try (InputStream in = zip.getInputStream(zipEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), readAll(in));
+                }
+            }
+            assertEquals("stored entry comment", zip.getEntry("META-INF/MANIFEST.MF").getComment());
+        }
+
+        List<String> streamed = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(Files.readAllBytes(output.toPath())))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                streamed.add(entry.getName());
+                assertArrayEquals(entry.getName(), expected.get(entry.getName()), readAll(in));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), streamed);
+    }
+
+    @Test
+    public void directoryReadsEntryData() throws IOException {
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        ZipDirectory directory = ZipDirectory.read(ByteBuffer.wrap(sourceArchive(expected)));
+        List<String> names = new ArrayList<>();
+        for (ZipDirectory.Entry entry : directory.entries()) {
+            names.add(entry.name);
+            if (!entry.isDirectory()) {
+                try (InputStream in = directory.openStream(entry)) {
+                    assertArrayEquals(entry.name, expected.get(entry.name), readAll(in));
+                }
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), names);
+    }
+
+    @Test(expected = ZipException.class)
+    public void notAnArchiveIsRejected() throws IOException {
+        ZipDirectory.read(ByteBuffer.wrap(new byte[100]));
+    }
+
+    // Несжатая запись с комментарием, папка, сжатые записи с дескриптором данных и extra, имя в UTF-8
+    private static byte[] sourceArchive(Map<String, byte[]> contents) throws IOException {
+        byte[] random = new byte[200_000];
+        new Random(1).nextBytes(random);
+        byte[] text = String.join("\n", Collections.nCopies(2000, "tile.test.block.name=Test Block")).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes, StandardCharsets.UTF_8)) {
+            byte[] manifest = "Manifest-Version: 1.0\r\n".getBytes(StandardCharsets.UTF_8);
+            ZipEntry stored = new ZipEntry("META-INF/MANIFEST.MF");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(manifest.length);
+            stored.setCrc(crc(manifest));
+            stored.setComment("stored entry comment");
+            put(out, stored, manifest, contents);
+            put(out, new ZipEntry("assets/"), new byte[0], contents);
+            put(out, new ZipEntry("assets/test/lang/en_us.lang"), text, contents);
+            ZipEntry withExtra = new ZipEntry("assets/test/textures/блок.png");
+            withExtra.setExtra(new byte[] {(byte) 0xfe, (byte) 0xca, 4, 0, 1, 2, 3, 4});
+            put(out, withExtra, random, contents);
+            put(out, new ZipEntry("empty.txt"), new byte[0], contents);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void put(ZipOutputStream out, ZipEntry entry, byte[] content, Map<String, byte[]> contents) throws IOException {
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+        contents.put(entry.getName(), content);
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,120 @@
+package com.modtranslator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TranslationMemoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenedMemoryFindsTranslationsThroughTheIndex() throws IOException {
+        File directory = folder.newFolder("memory");
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            for (int i = 0; i < 3000; i++) {
+                memory.put("Text " + i, "ru", "Текст " + i);
+            }
+            memory.put("Text 7", "de", "Text sieben");
+            memory.put("Text 7", "ru", "Текст семь");
+        }
+
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            assertEquals(3001, memory.size());
+            assertEquals("Текст 0", memory.get("Text 0", "ru"));
+            assertEquals("Текст 2999", memory.get("Text 2999", "ru"));
+            assertEquals("Текст семь", memory.get("Text 7", "ru"));
+            assertEquals("Text sieben", memory.get("Text 7", "de"));
+            assertNull(memory.get("Text 3000", "ru"));
+            assertNull(memory.get("Text 0", "de"));
+        }
+    }
+
+    @Test
+    public void recordsWrittenAfterTheIndexAreReadFromTheLog() throws IOException {
+        File directory = folder.newFolder("memory");
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            memory.put("Stone", "ru", "Камень");
+        }
+        // Индекс старого состояния, лог с новой записью: как после сбоя между записью лога и индекса
+        File index = new File(directory, "memory.idx");
+        byte[] oldIndex = Files.readAllBytes(index.toPath());
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            memory.put("Iron", "ru", "Железо");
+        }
+        Files.write(index.toPath(), oldIndex);
+
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            assertEquals(2, memory.size());
+            assertEquals("Камень", memory.get("Stone", "ru"));
+            assertEquals("Железо", memory.get("Iron", "ru"));
+        }
+    }
+
+    @Test
+    public void damagedLogTailIsDropped() throws IOException {
+        File directory = folder.newFolder("memory");
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            memory.put("Stone", "ru", "Камень");
+            memory.put("Iron", "ru", "Железо");
+        }
+        File log = new File(directory, "memory.log");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        new File(directory, "memory.idx").delete();
+
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            assertEquals(1, memory.size());
+            assertEquals("Камень", memory.get("Stone", "ru"));
+            assertNull(memory.get("Iron", "ru"));
+            memory.put("Iron", "ru", "Железо");
+        }
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            assertEquals("Железо", memory.get("Iron", "ru"));
+        }
+    }
+
+    @Test
+    public void compactionKeepsTheNewestRecords() throws IOException {
+        File directory = folder.newFolder("memory");
+        try (TranslationMemory memory = TranslationMemory.open(directory, 64 * 1024, 16)) {
+            for (int i = 0; i < 5000; i++) {
+                memory.put("Text " + i, "ru", "Текст " + i);
+            }
+        }
+        try (TranslationMemory memory = TranslationMemory.open(directory, 64 * 1024, 16)) {
+            assertEquals("Текст 4999", memory.get("Text 4999", "ru"));
+            assertNull(memory.get("Text 0", "ru"));
+        }
+        assertTrue(new File(directory, "memory.log").length() <= 64 * 1024);
+    }
+
+    @Test
+    public void secondOpenFailsWhileTheMemoryIsInUse() throws IOException {
+        File directory = folder.newFolder("memory");
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            memory.put("Stone", "ru", "Камень");
+            try {
+                TranslationMemory.open(directory, 0, 16).close();
+                fail("Memory opened twice");
+            } catch (IOException expected) {
+                // Занятая память не открывается
+            }
+            assertEquals("Камень", memory.get("Stone", "ru"));
+        }
+        try (TranslationMemory memory = TranslationMemory.open(directory, 0, 16)) {
+            assertEquals("Камень", memory.get("Stone", "ru"));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.modtranslator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TranslatorCliTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    public void translatesIntoEveryLanguageAndPrintsASummary() throws IOException {
+        File jar = createJar(folder.newFolder("in"));
+        File output = folder.newFolder("out");
+
+        int exitCode = run("--backend", "local", "--no-cache", "--no-checkpoint", "--rps", "0",
+            "-l", "Russian,german", "-o", output.getPath(), jar.getPath());
+
+        assertEquals(err.toString(), TranslatorCli.EXIT_OK, exitCode);
+        try (ZipFile result = new ZipFile(new File(output, "translated_mod.jar"))) {
+            assertNotNull(result.getEntry("assets/test/lang/en_us.json"));
+            assertNotNull(result.getEntry("assets/test/lang/ru_ru.json"));
+            assertNotNull(result.getEntry("assets/test/lang/de_de.json"));
+        }
+        String[] lines = out.toString("UTF-8").trim().split("\n");
+        JsonObject summary = JsonParser.parseString(lines[lines.length - 1]).getAsJsonObject();
+        assertEquals("summary", summary.get("event").getAsString());
+        assertEquals(1, summary.get("succeeded").getAsInt());
+        assertEquals(0, summary.get("failed").getAsInt());
+    }
+
+    @Test
+    public void invalidArgumentsPrintTheUsage() throws IOException {
+        File jar = createJar(folder.newFolder("in"));
+        assertEquals(TranslatorCli.EXIT_USAGE, run());
+        assertEquals(TranslatorCli.EXIT_USAGE, run(jar.getPath()));
+        assertEquals(TranslatorCli.EXIT_USAGE, run("-l", "English", jar.getPath()));
+        assertEquals(TranslatorCli.EXIT_USAGE, run("-l", "Russian", "--unknown", jar.getPath()));
+        assertEquals(TranslatorCli.EXIT_USAGE, run("-l", "Russian", new File(folder.getRoot(), "missing.jar").getPath()));
+        assertEquals(TranslatorCli.EXIT_USAGE, run("-l"));
+        assertTrue(err.toString("UTF-8").contains("Usage"));
+    }
+
+    @Test
+    public void brokenJarFailsTheRun() throws IOException {
+        File broken = folder.newFile("broken.jar");
+        Files.write(broken.toPath(), "not a zip".getBytes(StandardCharsets.UTF_8));
+
+        int exitCode = run("--backend", "local", "--no-cache", "--no-checkpoint",
+            "-l", "Russian", "-o", folder.newFolder("out").getPath(), broken.getPath());
+
+        assertEquals(TranslatorCli.EXIT_FAILED, exitCode);
+    }
+
+    @Test
+    public void listsTargetLanguages() throws IOException {
+        assertEquals(TranslatorCli.EXIT_OK, run("--list-languages"));
+        String languages = out.toString("UTF-8");
+        assertTrue(languages.contains("Russian\tru\tru_ru"));
+        assertTrue(languages.contains("Hebrew\tiw\the_il"));
+        assertFalse(languages.contains("en_us"));
+    }
+
+    private int run(String... args) throws IOException {
+        return new TranslatorCli(new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8")).run(args);
+    }
+
+    private static File createJar(File directory) throws IOException {
+        File jar = new File(directory, "mod.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry("assets/test/lang/en_us.json"));
+            zip.write("{\"block.test.stone\":\"Polished Stone\",\"item.test.gear\":\"Iron Gear\"}".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("assets/test/textures/stone.png"));
+            zip.write(new byte[] {1, 2, 3});
+        }
+        return jar;
+    }
+}